@@ -0,0 +1,75 @@
+package net.team33.async.consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares passing a bulk of messages to a {@link Scheduler} one by one via {@code accept()}
+ * with passing them at once via {@code acceptAll()}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BulkBenchmark {
+
+    private static final int BULK_SIZE = 500;
+    private static final int LOAD_LIMIT = 100000;
+
+    @Benchmark
+    @OperationsPerInvocation(BULK_SIZE)
+    public final void accept(final Subject subject) {
+        subject.messages.forEach(subject.scheduler);
+        subject.backOff();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BULK_SIZE)
+    public final void acceptAll(final Subject subject) {
+        subject.scheduler.acceptAll(subject.messages);
+        subject.backOff();
+    }
+
+    @State(Scope.Benchmark)
+    public static class Subject {
+
+        private final List<Integer> messages = new ArrayList<>(BULK_SIZE);
+        private Scheduler<Integer> scheduler;
+
+        @Setup(Level.Trial)
+        public final void setup() {
+            for (int index = 0; index < BULK_SIZE; ++index) {
+                messages.add(index);
+            }
+            scheduler = Scheduler.builder(Strategy.linear(1000, 4), (Integer message) -> Blackhole.consumeCPU(8))
+                                 .build();
+        }
+
+        @TearDown(Level.Iteration)
+        public final void tearDown() throws InterruptedException {
+            scheduler.join(TimeUnit.MINUTES.toMillis(1));
+        }
+
+        /**
+         * Keeps the producer from outrunning the workers unboundedly.
+         */
+        final void backOff() {
+            while (LOAD_LIMIT < scheduler.getLoad()) {
+                Thread.yield();
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package net.team33.async.consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Measures the throughput of {@code accept()} when 1, 4 or 16 producer threads pass messages concurrently
+ * to a {@link Scheduler} respectively a {@link ConcurrentScheduler}, the latter with a single queue or with
+ * one stripe per core.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ContentionBenchmark {
+
+    private static final Integer MESSAGE = 278;
+    private static final int CHECK_MASK = 1023;
+    private static final int LOAD_LIMIT = 100000;
+
+    @Benchmark
+    @Threads(1)
+    public final void accept01(final Subject subject, final Producer producer) {
+        accept(subject, producer);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public final void accept04(final Subject subject, final Producer producer) {
+        accept(subject, producer);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public final void accept16(final Subject subject, final Producer producer) {
+        accept(subject, producer);
+    }
+
+    private static void accept(final Subject subject, final Producer producer) {
+        subject.consumer.accept(MESSAGE);
+        producer.backOff(subject);
+    }
+
+    public enum Variant {
+        LOCKED, LOCK_FREE, SHARDED
+    }
+
+    @State(Scope.Benchmark)
+    public static class Subject {
+
+        @Param({"LOCKED", "LOCK_FREE", "SHARDED"})
+        public Variant variant;
+
+        private Consumer<Integer> consumer;
+        private Join join;
+        private Load load;
+
+        @Setup(Level.Trial)
+        public final void setup() {
+            final Strategy strategy = Strategy.linear(1000, 4);
+            final Consumer<Integer> target = message -> Blackhole.consumeCPU(8);
+            if (Variant.LOCKED == variant) {
+                final Scheduler<Integer> scheduler = Scheduler.builder(strategy, target).build();
+                consumer = scheduler;
+                join = scheduler::join;
+                load = scheduler::getLoad;
+            } else {
+                final int stripes = (Variant.SHARDED == variant) ? Runtime.getRuntime().availableProcessors() : 1;
+                final ConcurrentScheduler<Integer> scheduler = ConcurrentScheduler.builder(strategy, target)
+                                                                                  .setStripes(stripes)
+                                                                                  .build();
+                consumer = scheduler;
+                join = scheduler::join;
+                load = scheduler::getLoad;
+            }
+        }
+
+        @TearDown(Level.Iteration)
+        public final void tearDown() throws InterruptedException {
+            join.join(TimeUnit.MINUTES.toMillis(1));
+        }
+    }
+
+    /**
+     * Keeps the producers from outrunning the workers unboundedly.
+     */
+    @State(Scope.Thread)
+    public static class Producer {
+
+        private int count = 0;
+
+        final void backOff(final Subject subject) {
+            if (0 == (++count & CHECK_MASK)) {
+                while (LOAD_LIMIT < subject.load.getLoad()) {
+                    Thread.yield();
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Join {
+        boolean join(long millis) throws InterruptedException;
+    }
+
+    @FunctionalInterface
+    private interface Load {
+        int getLoad();
+    }
+}
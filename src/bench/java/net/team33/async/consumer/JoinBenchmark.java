@@ -0,0 +1,53 @@
+package net.team33.async.consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how fast {@link Scheduler#join(long)} wakes up when the last message is processed.
+ * <p/>
+ * An idle worker thread is kept alive, so each sample consists of handing over one message to that worker
+ * and the wake-up of the joining thread, but not of a thread launch.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class JoinBenchmark {
+
+    private static final Integer MESSAGE = 278;
+
+    @Benchmark
+    public final boolean join(final Subject subject) throws InterruptedException {
+        subject.scheduler.accept(MESSAGE);
+        return subject.scheduler.join(TimeUnit.MINUTES.toMillis(1));
+    }
+
+    @State(Scope.Benchmark)
+    public static class Subject {
+
+        private Scheduler<Integer> scheduler;
+
+        @Setup(Level.Trial)
+        public final void setup() {
+            scheduler = Scheduler.builder(Strategy.linear(1, 1), (Integer message) -> {
+            }).setKeepAlive(TimeUnit.MINUTES.toMillis(1)).build();
+        }
+
+        @TearDown(Level.Trial)
+        public final void tearDown() {
+            scheduler.stop();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package net.team33.async.consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the throughput of 8 producer threads passing messages to a {@link JournaledScheduler} (group commit)
+ * with forcing a log to the storage device per message before passing it to a {@link Scheduler}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+public class JournalBenchmark {
+
+    private static final Integer MESSAGE = 278;
+    private static final Codec<Integer> CODEC = new Codec<Integer>() {
+        @Override
+        public byte[] encode(final Integer message) {
+            return ByteBuffer.allocate(4).putInt(message).array();
+        }
+
+        @Override
+        public Integer decode(final byte[] bytes) {
+            return ByteBuffer.wrap(bytes).getInt();
+        }
+    };
+
+    @Benchmark
+    public final void groupCommit(final Subject subject) {
+        subject.journaled.accept(MESSAGE);
+    }
+
+    @Benchmark
+    public final void forcePerMessage(final Subject subject) throws IOException {
+        synchronized (subject.log) {
+            subject.log.write(CODEC.encode(MESSAGE));
+            subject.log.getFD().sync();
+        }
+        subject.plain.accept(MESSAGE);
+    }
+
+    @State(Scope.Benchmark)
+    public static class Subject {
+
+        private File directory;
+        private JournaledScheduler<Integer> journaled;
+        private Scheduler<Integer> plain;
+        private RandomAccessFile log;
+
+        @Setup(Level.Trial)
+        public final void setup() throws IOException {
+            directory = Files.createTempDirectory("journal").toFile();
+            journaled = JournaledScheduler.builder(Strategy.linear(1000, 4), (Integer message) -> {
+            }, directory, CODEC).build();
+            plain = Scheduler.builder(Strategy.linear(1000, 4), (Integer message) -> {
+            }).build();
+            log = new RandomAccessFile(new File(directory, "plain.log"), "rw");
+        }
+
+        @TearDown(Level.Trial)
+        public final void tearDown() throws InterruptedException, IOException {
+            journaled.join(TimeUnit.MINUTES.toMillis(1));
+            plain.join(TimeUnit.MINUTES.toMillis(1));
+            journaled.close();
+            log.close();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package net.team33.async.consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the end-to-end latency from passing a message to a {@link Scheduler} until the target receives it,
+ * with and without an idle worker thread {@linkplain Scheduler.Builder#setKeepAlive(long) kept alive}.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LatencyBenchmark {
+
+    @Benchmark
+    public final long accept(final Subject subject) {
+        final long sent = subject.sent + 1;
+        subject.scheduler.accept(sent);
+        while (sent != subject.received) {
+            Thread.yield();
+        }
+        subject.sent = sent;
+        return sent;
+    }
+
+    @State(Scope.Benchmark)
+    public static class Subject {
+
+        @Param({"0", "1000"})
+        public long keepAlive;
+
+        private Scheduler<Long> scheduler;
+        private long sent = 0;
+        private volatile long received = 0;
+
+        @Setup(Level.Trial)
+        public final void setup() {
+            scheduler = Scheduler.builder(Strategy.linear(1, 1), (Long message) -> received = message)
+                                 .setKeepAlive(keepAlive)
+                                 .build();
+        }
+
+        @TearDown(Level.Trial)
+        public final void tearDown() throws InterruptedException {
+            scheduler.join(TimeUnit.MINUTES.toMillis(1));
+        }
+    }
+}
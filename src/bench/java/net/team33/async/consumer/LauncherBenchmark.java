@@ -0,0 +1,55 @@
+package net.team33.async.consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost to {@linkplain Launcher#launch(Runnable) launch} a thread and to let it terminate.
+ * <p/>
+ * Use {@code -p threads=VIRTUAL} on a runtime that supports virtual threads (Java 21+).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LauncherBenchmark {
+
+    private static final Runnable NOTHING = () -> {
+    };
+
+    @Benchmark
+    public final Thread launch(final Subject subject) throws InterruptedException {
+        final Thread result = subject.launcher.launch(NOTHING);
+        result.join();
+        return result;
+    }
+
+    public enum Threads {
+        PLATFORM, VIRTUAL
+    }
+
+    @State(Scope.Benchmark)
+    public static class Subject {
+
+        @Param({"PLATFORM"})
+        public Threads threads;
+
+        private Launcher launcher;
+
+        @Setup(Level.Trial)
+        public final void setup() {
+            launcher = new Launcher((Threads.VIRTUAL == threads) ? Launcher.virtual() : Thread::new);
+        }
+    }
+}
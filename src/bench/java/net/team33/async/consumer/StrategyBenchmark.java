@@ -0,0 +1,71 @@
+package net.team33.async.consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static net.team33.async.consumer.Payload.payload;
+
+/**
+ * Measures the cost of {@link Strategy#test(Payload)} for the different functions, including the {@link Payload}
+ * a client allocates per call, compared to the primitive variant the schedulers use.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class StrategyBenchmark {
+
+    private static final int MASK = 1023;
+
+    @Benchmark
+    public final boolean test(final Subject subject) {
+        final int count = ++subject.count;
+        return subject.strategy.test(payload(count & MASK, (count >> 10) & 15));
+    }
+
+    @Benchmark
+    public final boolean testPrimitive(final Subject subject) {
+        final int count = ++subject.count;
+        return subject.strategy.test(count & MASK, (count >> 10) & 15);
+    }
+
+    public enum Function {
+        LINEAR, QUADRATIC, CUBIC
+    }
+
+    @State(Scope.Thread)
+    public static class Subject {
+
+        @Param({"LINEAR", "QUADRATIC", "CUBIC"})
+        public Function function;
+
+        private Strategy strategy;
+        private int count = 0;
+
+        @Setup(Level.Trial)
+        public final void setup() {
+            switch (function) {
+            case LINEAR:
+                strategy = Strategy.linear(10, 16);
+                break;
+            case QUADRATIC:
+                strategy = Strategy.quadratic(10, 16);
+                break;
+            default:
+                strategy = Strategy.cubic(10, 16);
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package net.team33.async.consumer;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static java.lang.String.format;
+import static java.lang.System.nanoTime;
+
+/**
+ * Drives a {@link Scheduler} by synthetic workloads and sweeps the parameters of its {@link Strategy}
+ * to support the choice between {@link Strategy#linear(int, int) linear}, {@link Strategy#quadratic(int, int)
+ * quadratic} and {@link Strategy#cubic(int, int) cubic} and of a {@code loadFactor} and a {@code threshold}
+ * by data rather than by guesswork.
+ * <p/>
+ * Each combination of {@link Workload}, {@link Arrival}, curve, load factor and threshold is run against a fresh
+ * scheduler and reported as one line of CSV: throughput, p50/p99 latency from passing a message to the scheduler
+ * until the target has finished it, the number of worker threads launched, the peak number of running threads and
+ * the peak queue size (sampled right after each message passed).
+ * <p/>
+ * Not a JMH benchmark but a plain main class, run via the {@code bench} profile:
+ * <pre>
+ * mvn -P bench test-compile exec:exec -Dt33.bench.main=net.team33.async.consumer.StrategyTuning \
+ *     -Dt33.bench.args="messages=5000 rate=10000 work=50 out=target/tuning.csv"
+ * </pre>
+ * Options (as {@code key=value}, lists separated by commas):
+ * {@code messages}, {@code rate} (messages per second), {@code work} (microseconds per message),
+ * {@code workloads}, {@code arrivals}, {@code curves}, {@code loadFactors}, {@code thresholds} and {@code out}
+ * (a file, default is the standard output).
+ */
+public class StrategyTuning {
+
+    private static final String HEADER = "workload,arrival,curve,loadFactor,threshold,messages,seconds," +
+            "throughput,p50Micros,p99Micros,launched,peakRunning,peakQueue";
+    private static final String LINE_FORMAT = "%s,%s,%s,%d,%d,%d,%.3f,%.1f,%.1f,%.1f,%d,%d,%d";
+    private static final String OPTION_FORMAT = "illegal option (%s) - expected <key>=<value>";
+    private static final int BURST = 100;
+    private static final long SEED = 33;
+
+    /**
+     * Keeps the busy loop of {@link Workload#CPU} from being optimized away.
+     */
+    @SuppressWarnings("unused")
+    private static volatile long sink = 0;
+
+    private final int messages;
+    private final long interval;
+    private final long work;
+
+    private StrategyTuning(final int messages, final long interval, final long work) {
+        this.messages = messages;
+        this.interval = interval;
+        this.work = work;
+    }
+
+    public static void main(final String[] args) throws InterruptedException, FileNotFoundException {
+        final Map<String, String> options = options(args);
+        final int messages = Integer.parseInt(options.getOrDefault("messages", "5000"));
+        final long rate = Long.parseLong(options.getOrDefault("rate", "10000"));
+        final long work = Long.parseLong(options.getOrDefault("work", "50"));
+        final List<Workload> workloads = list(options.getOrDefault("workloads", "CPU,SLEEP,MIXED"), Workload::valueOf);
+        final List<Arrival> arrivals = list(options.getOrDefault("arrivals", "STEADY,BURSTY,POISSON"),
+                                            Arrival::valueOf);
+        final List<Curve> curves = list(options.getOrDefault("curves", "LINEAR,QUADRATIC,CUBIC"), Curve::valueOf);
+        final List<Integer> loadFactors = list(options.getOrDefault("loadFactors", "1,10,100"), Integer::valueOf);
+        final List<Integer> thresholds = list(options.getOrDefault("thresholds", "1,4,16"), Integer::valueOf);
+
+        final StrategyTuning tuning = new StrategyTuning(messages, TimeUnit.SECONDS.toNanos(1) / rate,
+                                                         TimeUnit.MICROSECONDS.toNanos(work));
+        final String out = options.get("out");
+        final PrintStream stream = (null == out) ? System.out : new PrintStream(out);
+        try {
+            stream.println(HEADER);
+            for (final Workload workload : workloads) {
+                for (final Arrival arrival : arrivals) {
+                    for (final Curve curve : curves) {
+                        for (final int loadFactor : loadFactors) {
+                            for (final int threshold : thresholds) {
+                                stream.println(tuning.run(workload, arrival, curve, loadFactor, threshold));
+                                stream.flush();
+                            }
+                        }
+                    }
+                }
+            }
+        } finally {
+            if (stream != System.out) {
+                stream.close();
+            }
+        }
+    }
+
+    private static Map<String, String> options(final String[] args) throws IllegalArgumentException {
+        final Map<String, String> result = new HashMap<>(0);
+        for (final String arg : args) {
+            final int index = arg.indexOf('=');
+            if (0 > index) {
+                throw new IllegalArgumentException(format(OPTION_FORMAT, arg));
+            }
+            result.put(arg.substring(0, index), arg.substring(index + 1));
+        }
+        return result;
+    }
+
+    private static <T> List<T> list(final String value, final Function<String, T> parse) {
+        return Arrays.stream(value.split(","))
+                     .map(String::trim)
+                     .map(parse)
+                     .collect(Collectors.toList());
+    }
+
+    private static void spin(final long nanos) {
+        final long time0 = nanoTime();
+        long sum = 0;
+        while ((nanoTime() - time0) < nanos) {
+            sum += time0;
+        }
+        sink = sum;
+    }
+
+    private static void awaitUntil(final long due) {
+        for (long delta = due - nanoTime(); 0 < delta; delta = due - nanoTime()) {
+            LockSupport.parkNanos(delta);
+        }
+    }
+
+    private static double micros(final long[] sorted, final double percentile) {
+        final int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile / 100 * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1000.0;
+    }
+
+    private String run(final Workload workload, final Arrival arrival, final Curve curve,
+                       final int loadFactor, final int threshold) throws InterruptedException {
+        final long[] sent = new long[messages];
+        final long[] latency = new long[messages];
+        final Scheduler<Integer> scheduler = Scheduler.builder(curve.apply(loadFactor, threshold), (Integer index) -> {
+            workload.process(index, work);
+            latency[index] = nanoTime() - sent[index];
+        }).build();
+
+        final Random random = new Random(SEED);
+        int peakQueue = 0;
+        final long time0 = nanoTime();
+        long due = time0;
+        for (int index = 0; index < messages; ++index) {
+            due += arrival.next(index, interval, random);
+            awaitUntil(due);
+            sent[index] = nanoTime();
+            scheduler.accept(index);
+            peakQueue = Math.max(peakQueue, scheduler.getOverhead());
+        }
+        if (!scheduler.join(TimeUnit.MINUTES.toMillis(10))) {
+            throw new IllegalStateException("not finished: " + scheduler);
+        }
+        final long elapsed = nanoTime() - time0;
+
+        final Statistics statistics = scheduler.getStatistics();
+        Arrays.sort(latency);
+        final double seconds = elapsed / 1.0e9;
+        return format(Locale.ROOT, LINE_FORMAT, workload, arrival, curve, loadFactor, threshold, messages,
+                      seconds, messages / seconds, micros(latency, 50), micros(latency, 99),
+                      statistics.getLaunched(), statistics.getPeakRunning(), peakQueue);
+    }
+
+    /**
+     * Synthetic targets, each one taking about the given {@code work} time per message.
+     */
+    private enum Workload {
+
+        /**
+         * Keeps a core busy.
+         */
+        CPU {
+            @Override
+            void process(final int index, final long work) {
+                spin(work);
+            }
+        },
+
+        /**
+         * Blocks without using a core, like waiting for I/O.
+         */
+        SLEEP {
+            @Override
+            void process(final int index, final long work) {
+                LockSupport.parkNanos(work);
+            }
+        },
+
+        /**
+         * Keeps a core busy for half of the time and blocks for the other half.
+         */
+        MIXED {
+            @Override
+            void process(final int index, final long work) {
+                spin(work / 2);
+                LockSupport.parkNanos(work - work / 2);
+            }
+        };
+
+        abstract void process(int index, long work);
+    }
+
+    /**
+     * Patterns of the arrival of messages, all of them at the same average rate.
+     */
+    private enum Arrival {
+
+        /**
+         * One message per interval.
+         */
+        STEADY {
+            @Override
+            long next(final int index, final long interval, final Random random) {
+                return interval;
+            }
+        },
+
+        /**
+         * {@value #BURST} messages at once, then a pause of {@value #BURST} intervals.
+         */
+        BURSTY {
+            @Override
+            long next(final int index, final long interval, final Random random) {
+                return (0 == index % BURST) ? (BURST * interval) : 0;
+            }
+        },
+
+        /**
+         * Exponentially distributed intervals, as of independent arrivals (Poisson process).
+         */
+        POISSON {
+            @Override
+            long next(final int index, final long interval, final Random random) {
+                return (long) (-Math.log(1.0 - random.nextDouble()) * interval);
+            }
+        };
+
+        /**
+         * Retrieves the time in nanoseconds from the previous message until the message with the given index.
+         */
+        abstract long next(int index, long interval, Random random);
+    }
+
+    private enum Curve {
+
+        LINEAR {
+            @Override
+            Strategy apply(final int loadFactor, final int threshold) {
+                return Strategy.linear(loadFactor, threshold);
+            }
+        },
+
+        QUADRATIC {
+            @Override
+            Strategy apply(final int loadFactor, final int threshold) {
+                return Strategy.quadratic(loadFactor, threshold);
+            }
+        },
+
+        CUBIC {
+            @Override
+            Strategy apply(final int loadFactor, final int threshold) {
+                return Strategy.cubic(loadFactor, threshold);
+            }
+        };
+
+        abstract Strategy apply(int loadFactor, int threshold);
+    }
+}
@@ -0,0 +1,120 @@
+package net.team33.async.consumer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.lang.System.nanoTime;
+
+/**
+ * A thread limit that tunes itself by hill-climbing on the observed throughput (processed messages per time).
+ * <p/>
+ * The completions reported by the worker threads are summed up per time window. At the end of a window the
+ * throughput is compared to the one of the previous window, i.e. the effect of the last step of the limit is judged:
+ * the limit keeps moving in the same direction as long as the throughput doesn't get worse. If an increase made it
+ * worse, the limit backs off multiplicatively, so it quickly recovers when e.g. a downstream system slows down.
+ * If a decrease made it worse, the limit turns around and climbs additively again.
+ * <p/>
+ * Only windows during which the limit has been binding are judged, i.e. when a worker thread was not launched
+ * because of the limit. Only then the throughput reflects the capacity of the running threads rather than the
+ * arrival rate of the messages. Otherwise the limit is held, so a falling offered load doesn't drive it down,
+ * and climbing restarts with an increase as soon as the limit binds again.
+ */
+class Adaptive {
+
+    private static final String TO_STRING_FORMAT = "adaptive(min(%d), max(%d), limit(%d))";
+
+    private final int min;
+    private final int max;
+    private final long window;
+    private final LongAdder completed = new LongAdder();
+    private final AtomicLong windowStart = new AtomicLong(nanoTime());
+    /**
+     * Indicates that the limit has prevented to launch a worker thread during the current window.
+     */
+    private volatile boolean saturated = false;
+    private volatile int limit;
+    /**
+     * The state of the hill-climbing. Accessed by the one thread that won the end of a window only.
+     */
+    private double previous = 0.0;
+    /**
+     * The direction of the last step: {@code 1} (increase), {@code -1} (decrease) or {@code 0} if the last window
+     * was not judged, so there's no reference.
+     */
+    private int step = 0;
+
+    Adaptive(final int min, final int max, final long windowMillis) {
+        this.min = min;
+        this.max = max;
+        this.window = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.limit = min;
+    }
+
+    final int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Called when a worker thread has not been launched because of the limit.
+     */
+    final void saturate() {
+        if (!saturated) {
+            saturated = true;
+        }
+    }
+
+    /**
+     * Called by worker threads to report some finally processed messages.
+     *
+     * @param processed The number of messages.
+     * @param now       The current {@link System#nanoTime()}.
+     */
+    final void feedback(final int processed, final long now) {
+        completed.add(processed);
+        final long start = windowStart.get();
+        final long elapsed = now - start;
+        if ((elapsed >= window) && windowStart.compareAndSet(start, now)) {
+            final boolean binding = saturated;
+            saturated = false;
+            adjust(completed.sumThenReset(), elapsed, binding);
+        }
+    }
+
+    /**
+     * Adjusts the limit at the end of a window.
+     *
+     * @param count   The number of messages processed during the window.
+     * @param elapsed The duration of the window in nanoseconds.
+     * @param binding {@code true} if the limit prevented to launch a worker thread during the window.
+     */
+    final void adjust(final long count, final long elapsed, final boolean binding) {
+        final double throughput = (double) count / elapsed;
+        if (!binding) {
+            // The throughput tells nothing about the capacity and may have dropped just because
+            // fewer messages arrived: hold the limit ...
+            step = 0;
+        } else if (0 == step) {
+            // No reference: probe whether more threads help ...
+            step = 1;
+            limit = Math.min(max, limit + 1);
+        } else if (throughput >= previous) {
+            // The last step didn't make things worse: keep on ...
+            limit = Math.max(min, Math.min(max, limit + step));
+        } else if (0 < step) {
+            // The last increase made things worse: back off ...
+            step = -1;
+            limit = Math.max(min, (limit * 3) / 4);
+        } else {
+            // The last decrease made things worse: turn around ...
+            step = 1;
+            limit = Math.min(max, limit + 1);
+        }
+        previous = throughput;
+    }
+
+    @Override
+    public final String toString() {
+        return String.format(TO_STRING_FORMAT, min, max, limit);
+    }
+}
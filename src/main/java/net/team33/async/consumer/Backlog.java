@@ -0,0 +1,46 @@
+package net.team33.async.consumer;
+
+import java.util.List;
+
+/**
+ * Abstracts the queue of a {@link Scheduler}: a buffer of elements, each one paired with a time stamp.
+ * <p/>
+ * Implementations need not be thread-safe: the {@link Scheduler} accesses its backlog only while holding its lock.
+ */
+interface Backlog<E> {
+
+    int size();
+
+    boolean isEmpty();
+
+    /**
+     * Appends an element with the given time stamp.
+     *
+     * @throws NullPointerException when {@code element} is {@code null}.
+     */
+    void add(E element, long stamp) throws NullPointerException;
+
+    /**
+     * Removes and retrieves the next element to be processed or {@code null} if empty.
+     * The time stamp of a removed element is available by {@link #stamp()} until the next removal.
+     */
+    E poll();
+
+    /**
+     * Removes the element that is least worth to be processed, if any.
+     * Used to make room for a new element (see {@link Overflow#dropOldest()}).
+     *
+     * @return The removed element or {@code null} if empty.
+     */
+    E evict();
+
+    /**
+     * Retrieves the time stamp of the element most recently {@linkplain #poll() removed}.
+     */
+    long stamp();
+
+    /**
+     * Removes all elements and retrieves them in the order they would have been {@linkplain #poll() polled}.
+     */
+    List<E> clear();
+}
@@ -0,0 +1,30 @@
+package net.team33.async.consumer;
+
+import java.util.List;
+
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * Represents a problem that occurred while a batch target was processing a batch of messages.
+ *
+ * @see Scheduler#batchBuilder(Strategy, java.util.function.Consumer)
+ */
+public class BatchException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+    private static final String MESSAGE_FORMAT = "failed to process a batch of %d message(s)";
+
+    private final List<?> batch;
+
+    BatchException(final List<?> batch, final Throwable cause) {
+        super(String.format(MESSAGE_FORMAT, batch.size()), cause);
+        this.batch = unmodifiableList(batch);
+    }
+
+    /**
+     * Retrieves the batch of messages that failed to be processed.
+     */
+    public final List<?> getBatch() {
+        return batch;
+    }
+}
@@ -0,0 +1,163 @@
+package net.team33.async.consumer;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A {@link Backlog} that holds at most one element per key: a new element replaces a queued element with the same
+ * key (latest wins) and takes over its position, but keeps its own time stamp.
+ * <p/>
+ * The underlying backlog holds the first element queued per key as a placeholder. Replacing elements are held
+ * aside and substituted when the placeholder gets removed. So a replacement doesn't touch the underlying backlog.
+ * <p/>
+ * Not thread-safe: the {@link Scheduler} accesses it only while holding its lock.
+ */
+class Coalescing<E> implements Backlog<E> {
+
+    /**
+     * Marks a key whose placeholder has not been replaced (yet).
+     */
+    private static final Object ORIGINAL = new Object();
+    /**
+     * The number of keys above which the map of queued keys is re-created when it gets empty.
+     */
+    private static final int SHRINK_THRESHOLD = 64;
+
+    private final Function<? super E, ?> keyOf;
+    private final Backlog<E> backlog;
+    /**
+     * Maps the key of each queued element to its {@link Replacement} or to {@link #ORIGINAL}.
+     * <p/>
+     * A {@link HashMap} never shrinks its table, so after a burst of many distinct keys the map is re-created
+     * as soon as it gets empty.
+     */
+    private Map<Object, Object> queued = new HashMap<>(0);
+    /**
+     * The max. number of queued keys since the map was (re-)created.
+     */
+    private int peakKeys = 0;
+    private long coalesced = 0;
+    private long stamp = 0;
+
+    Coalescing(final Function<? super E, ?> keyOf, final Backlog<E> backlog) {
+        this.keyOf = keyOf;
+        this.backlog = backlog;
+    }
+
+    /**
+     * The number of elements replaced so far.
+     */
+    final long getCoalesced() {
+        return coalesced;
+    }
+
+    @Override
+    public final int size() {
+        return backlog.size();
+    }
+
+    @Override
+    public final boolean isEmpty() {
+        return backlog.isEmpty();
+    }
+
+    /**
+     * Replaces a queued element with the same key as the given one, if any.
+     *
+     * @return {@code true} if an element was replaced, {@code false} if the given element is still to be added.
+     */
+    @SuppressWarnings("unchecked")
+    final boolean coalesce(final E element, final long stamp) throws NullPointerException {
+        if (null == element) {
+            throw new NullPointerException("element == null");
+        }
+        final Object key = keyOf.apply(element);
+        final Object present = queued.get(key);
+        if (null == present) {
+            return false;
+        } else if (ORIGINAL == present) {
+            queued.put(key, new Replacement<>(element, stamp));
+        } else {
+            ((Replacement<E>) present).set(element, stamp);
+        }
+        coalesced += 1;
+        return true;
+    }
+
+    /**
+     * Appends an element or replaces a queued element with the same key.
+     */
+    @Override
+    public final void add(final E element, final long stamp) throws NullPointerException {
+        if (!coalesce(element, stamp)) {
+            backlog.add(element, stamp);
+            queued.put(keyOf.apply(element), ORIGINAL);
+            peakKeys = Math.max(peakKeys, queued.size());
+        }
+    }
+
+    @Override
+    public final E poll() {
+        return substitute(backlog.poll());
+    }
+
+    @Override
+    public final E evict() {
+        return substitute(backlog.evict());
+    }
+
+    /**
+     * Retrieves the latest element in place of a removed placeholder and forgets its key,
+     * so a further element with the same key gets queued anew.
+     */
+    @SuppressWarnings("unchecked")
+    private E substitute(final E placeholder) {
+        if (null == placeholder) {
+            return null;
+        }
+        final Object latest = queued.remove(keyOf.apply(placeholder));
+        if (queued.isEmpty() && (SHRINK_THRESHOLD < peakKeys)) {
+            queued = new HashMap<>(0);
+            peakKeys = 0;
+        }
+        if ((null == latest) || (ORIGINAL == latest)) {
+            stamp = backlog.stamp();
+            return placeholder;
+        } else {
+            final Replacement<E> replacement = (Replacement<E>) latest;
+            stamp = replacement.stamp;
+            return replacement.element;
+        }
+    }
+
+    @Override
+    public final long stamp() {
+        return stamp;
+    }
+
+    @Override
+    public final List<E> clear() {
+        final List<E> result = backlog.clear();
+        result.replaceAll(this::substitute);
+        queued = new HashMap<>(0);
+        peakKeys = 0;
+        return result;
+    }
+
+    private static final class Replacement<E> {
+
+        private E element;
+        private long stamp;
+
+        private Replacement(final E element, final long stamp) {
+            set(element, stamp);
+        }
+
+        private void set(final E element, final long stamp) {
+            this.element = element;
+            this.stamp = stamp;
+        }
+    }
+}
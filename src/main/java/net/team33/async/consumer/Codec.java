@@ -0,0 +1,28 @@
+package net.team33.async.consumer;
+
+/**
+ * Abstracts a way to convert messages to bytes and back, e.g. to spill them to a file
+ * (see {@link Scheduler.Builder#setSpill(int, java.io.File, Codec)}).
+ *
+ * @param <MSG> The type of messages.
+ * @author AKK - Andreas Kluge-Kaindl, Bremen (de)
+ * @since team33-async-8.0.1
+ */
+public interface Codec<MSG> {
+
+    /**
+     * Converts a message to bytes.
+     *
+     * @param message The message, not {@code null}.
+     * @return Not {@code null}.
+     */
+    byte[] encode(MSG message);
+
+    /**
+     * Converts bytes {@linkplain #encode(Object) encoded} before back to a message.
+     *
+     * @param bytes Not {@code null}.
+     * @return Not {@code null}.
+     */
+    MSG decode(byte[] bytes);
+}
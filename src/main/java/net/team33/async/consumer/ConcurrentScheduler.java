@@ -0,0 +1,430 @@
+package net.team33.async.consumer;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+import static java.lang.String.format;
+import static java.lang.System.currentTimeMillis;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Generic {@link java.util.function.Consumer Consumer} implementation for the asynchronous processing of
+ * messages in separate worker threads.
+ * <p/>
+ * Behaves like a {@link Scheduler} but does without a central monitor: messages are passed through a lock-free
+ * queue and the worker threads are accounted by atomic counters. So many concurrent producers don't contend
+ * for a single lock when passing messages.
+ * <p/>
+ * On many cores the queue may be divided into stripes (see {@link Builder#setStripes(int)}) so that producers
+ * and worker threads even don't contend for the head and tail of a single queue.
+ *
+ * @param <MSG> The type of messages to be consumed.
+ * @author AKK - Andreas Kluge-Kaindl, Bremen (de)
+ * @since team33-async-8.0.1
+ */
+@SuppressWarnings("UnusedDeclaration")
+public class ConcurrentScheduler<MSG> implements Consumer<MSG> {
+
+    private static final String TO_STRING_FORMAT = "%s(%s)";
+
+    private final Problems problems = new Problems();
+    private final Runnable worker = new Worker();
+    /**
+     * Used solely to let {@link #join(long)} wait for quiescence.
+     */
+    private final Lock lock = new ReentrantLock();
+    private final Condition quiet = lock.newCondition();
+    /**
+     * The number of messages passed and not yet finally processed.
+     * Is incremented before a message gets queued and decremented after it is finally processed (or un-queued).
+     */
+    private final AtomicInteger charge = new AtomicInteger(0);
+    /**
+     * The number of started worker threads not finished or may be not even
+     * started working (started from scheduler´s point of view).
+     */
+    private final AtomicInteger started = new AtomicInteger(0);
+    /**
+     * Used to assign a home stripe to each worker thread in a round robin manner.
+     */
+    private final AtomicInteger homes = new AtomicInteger(0);
+    /**
+     * Indicates if the instance is ready to receive (and process) messages.
+     */
+    private volatile boolean ready = true;
+
+    private final Strategy strategy;
+    private final Consumer<? super MSG> target;
+    private final Launcher launcher;
+    private final Queue<MSG>[] stripes;
+
+    private ConcurrentScheduler(final Builder<MSG> origin) {
+        this.strategy = origin.strategy;
+        this.target = origin.target;
+        this.launcher = new Launcher(origin.newThread);
+        this.stripes = newStripes(origin.stripes);
+        for (int index = 0; index < stripes.length; ++index) {
+            stripes[index] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    public static <MSG> Builder<MSG> builder(final Strategy strategy, final Consumer<MSG> target) {
+        return new Builder<>(strategy, target);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <MSG> Queue<MSG>[] newStripes(final int count) {
+        return (Queue<MSG>[]) new Queue<?>[count];
+    }
+
+    private static void throwProblems(final Iterator<Throwable> iterator) throws Throwable {
+        if (iterator.hasNext()) {
+            final Throwable head = iterator.next();
+            while (iterator.hasNext()) {
+                head.addSuppressed(iterator.next());
+            }
+            throw head;
+        }
+    }
+
+    /**
+     * Retrieves a list of the problems that may have been occurred during asynchronous processing of incoming
+     * messages, in order of occurrence.
+     * <p/>
+     * Only the most recent problems are retained (up to 1024), older ones are dropped
+     * (see {@link #getDroppedProblems()}).
+     */
+    public final List<Throwable> getProblems() {
+        return problems.list();
+    }
+
+    /**
+     * Removes and retrieves the retained problems in order of occurrence.
+     *
+     * @see #getProblems()
+     */
+    public final List<Throwable> drainProblems() {
+        return problems.drain();
+    }
+
+    /**
+     * The number of problems dropped so far because too many problems have been occurred to retain them all.
+     */
+    public final long getDroppedProblems() {
+        return problems.getDropped();
+    }
+
+    /**
+     * Throws an accumulated exception, if there are problems.
+     *
+     * @throws Throwable if there is at least one problem.
+     */
+    public final void throwProblems() throws Throwable {
+        throwProblems(getProblems().iterator());
+    }
+
+    @Override
+    public final String toString() {
+        return format(TO_STRING_FORMAT, getClass().getSimpleName(), strategy);
+    }
+
+    /**
+     * The number of currently running worker threads (from scheduler´s point of view), greater or equal to {@code 0}.
+     *
+     * @see Scheduler#getRunning()
+     */
+    public final int getRunning() {
+        return started.get();
+    }
+
+    /**
+     * The number of messages passed and not yet finally processed, greater or equal to {@code 0}.
+     */
+    public final int getLoad() {
+        return charge.get();
+    }
+
+    /**
+     * The number of messages queued for future processing and not yet dedicated to a running worker thread,
+     * greater or equal to {@code 0}.
+     *
+     * @see Scheduler#getOverhead()
+     */
+    public final int getOverhead() {
+        return Math.max(0, charge.get() - started.get());
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * <b>This implementation</b> queues the message for asynchronous processing without locking
+     * and starts a new worker thread if appropriate or necessary.
+     *
+     * @param message The message, not {@code null}.
+     *
+     * @throws NullPointerException  if {@code message} is {@code null}.
+     * @throws IllegalStateException if {@linkplain #stop() stopped} and not
+     *                               yet {@linkplain #start() restarted}
+     *                               (basically unspecific for Consumers).
+     */
+    @Override
+    public final void accept(final MSG message) throws NullPointerException, IllegalStateException {
+        requireNonNull(message);
+        if (ready) {
+            // Count the message before it gets visible to the workers, so the charge never falls below zero ...
+            final int newCharge = charge.incrementAndGet();
+            stripe().add(message);
+            for (int running = started.get(); strategy.test(newCharge, running); running = started.get()) {
+                if (started.compareAndSet(running, running + 1)) {
+                    launcher.launch(worker);
+                    return;
+                }
+            }
+        } else {
+            throw new IllegalStateException("not ready");
+        }
+    }
+
+    /**
+     * Retrieves the stripe the calling producer thread passes its messages to.
+     */
+    private Queue<MSG> stripe() {
+        return (1 == stripes.length)
+                ? stripes[0]
+                : stripes[(int) (Thread.currentThread().getId() % stripes.length)];
+    }
+
+    /**
+     * Removes and retrieves a message from the given home stripe or - if that is empty - from any other stripe.
+     *
+     * @return {@code null} if all stripes are empty.
+     */
+    private MSG poll(final int home) {
+        final MSG result = stripes[home].poll();
+        if (null == result) {
+            for (int offset = 1; offset < stripes.length; ++offset) {
+                final MSG stolen = stripes[(home + offset) % stripes.length].poll();
+                if (null != stolen) {
+                    return stolen;
+                }
+            }
+        }
+        return result;
+    }
+
+    private boolean isEmpty() {
+        for (final Queue<MSG> stripe : stripes) {
+            if (!stripe.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Blocks the calling thread until all queued messages are processed (so
+     * that all worker threads should be terminated) or a timeout occurs.
+     *
+     * @param millis The timeout time in milliseconds.
+     * @return {@code true} if all queued messages are processed.
+     * @throws IllegalArgumentException
+     * @throws InterruptedException
+     */
+    public final boolean join(final long millis) throws IllegalArgumentException, InterruptedException {
+        if (0 > millis) {
+            throw new IllegalArgumentException("0 > millis (" + millis + ")");
+
+        } else if (0 < millis) {
+            lock.lock();
+            try {
+                final long time0 = currentTimeMillis();
+                for (long delta = 0; (delta < millis) && !isQuiescent(); delta = currentTimeMillis() - time0) {
+                    quiet.await(millis - delta, TimeUnit.MILLISECONDS);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return isQuiescent();
+    }
+
+    private boolean isQuiescent() {
+        return (0 == started.get()) && (0 == charge.get());
+    }
+
+    private void signal() {
+        lock.lock();
+        try {
+            quiet.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Lets the calling worker thread retire when it is surplus, although messages may still be queued
+     * (see {@link Strategy}).
+     *
+     * @return {@code true} if the calling worker thread is going to terminate.
+     */
+    private boolean retire() {
+        // The last worker thread is never surplus, so the remaining ones will take care of the queue ...
+        for (int running = started.get(); strategy.isSurplus(charge.get(), running); running = started.get()) {
+            if (started.compareAndSet(running, running - 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Called by {@link Worker#run()} when the queue seems to be empty.
+     *
+     * @return {@code true} if the calling worker must go on because a message has been queued meanwhile
+     * that would otherwise be left behind.
+     */
+    private boolean retain() {
+        // This thread formally stops working and definitely will be going to terminate ...
+        if (0 == started.decrementAndGet()) {
+            signal();
+        }
+
+        // ... unless a message was queued after the last poll but before the decrement above,
+        // while the producer still was regarding this thread as running ...
+        if (!isEmpty()) {
+            for (int running = started.get(); strategy.test(charge.get(), running); running = started.get()) {
+                if (started.compareAndSet(running, running + 1)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Causes the scheduler to (re)gain normal operation.
+     *
+     * @see Scheduler#start()
+     */
+    public final void start() {
+        ready = true;
+    }
+
+    /**
+     * Causes the scheduler to stop normal operation.
+     *
+     * @see Scheduler#stop()
+     */
+    public final void stop() {
+        ready = false;
+    }
+
+    /**
+     * Causes the scheduler to stop normal operation as soon as possible.
+     * The un-queued messages are returned stripe by stripe, each stripe in its original order.
+     *
+     * @see Scheduler#stopASAP()
+     */
+    public final List<MSG> stopASAP() {
+        stop();
+        final List<MSG> result = new ArrayList<>(0);
+        for (final Queue<MSG> stripe : stripes) {
+            for (MSG message = stripe.poll(); null != message; message = stripe.poll()) {
+                result.add(message);
+            }
+        }
+        if (0 == charge.addAndGet(-result.size())) {
+            signal();
+        }
+        return result;
+    }
+
+    public final boolean isStopped() {
+        return !ready;
+    }
+
+    public static class Builder<MSG> {
+
+        private final Strategy strategy;
+        private final Consumer<MSG> target;
+        private BiFunction<Runnable, String, Thread> newThread = Thread::new;
+        private int stripes = 1;
+
+        private Builder(final Strategy strategy, final Consumer<MSG> target) throws NullPointerException {
+            this.strategy = requireNonNull(strategy);
+            this.target = requireNonNull(target);
+        }
+
+        /**
+         * Divides the queue into some stripes.
+         * <p/>
+         * A producer thread passes its messages to a stripe determined by its thread id, so the messages passed by a
+         * single producer thread stay in order (as far as processed by a single worker thread). Each worker thread
+         * drains a home stripe first and steals messages from the other stripes when its home stripe is empty.
+         * {@link ConcurrentScheduler#getLoad()}, {@link ConcurrentScheduler#join(long)} and
+         * {@link ConcurrentScheduler#stopASAP()} refer to all stripes.
+         * <p/>
+         * Default is {@code 1}: a single queue. A reasonable value for many producers is the number of cores.
+         *
+         * @throws IllegalArgumentException when {@code stripes} is less than {@code 1}.
+         */
+        public final Builder<MSG> setStripes(final int stripes) throws IllegalArgumentException {
+            if (1 > stripes) {
+                throw new IllegalArgumentException("1 > stripes (" + stripes + ")");
+            } else {
+                this.stripes = stripes;
+                return this;
+            }
+        }
+
+        /**
+         * @see Scheduler.Builder#setNewThread(BiFunction)
+         */
+        public final Builder<MSG> setNewThread(final BiFunction<Runnable, String, Thread> newThread)
+                throws NullPointerException {
+            this.newThread = requireNonNull(newThread);
+            return this;
+        }
+
+        /**
+         * @see Scheduler.Builder#setVirtualThreads()
+         */
+        public final Builder<MSG> setVirtualThreads() throws UnsupportedOperationException {
+            return setNewThread(Launcher.virtual());
+        }
+
+        public ConcurrentScheduler<MSG> build() {
+            return new ConcurrentScheduler<>(this);
+        }
+    }
+
+    private class Worker implements Runnable {
+        @Override
+        public final void run() {
+            final int home = (homes.getAndIncrement() & Integer.MAX_VALUE) % stripes.length;
+            do {
+                for (MSG message = poll(home); null != message; message = poll(home)) {
+                    try {
+                        target.accept(message);
+                    } catch (final Throwable caught) {
+                        problems.add(caught);
+                    }
+                    charge.decrementAndGet();
+                    if (retire()) {
+                        return;
+                    }
+                }
+            } while (retain());
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package net.team33.async.consumer;
+
+/**
+ * Represents a snapshot of a distribution of time spans in nanoseconds.
+ * <p/>
+ * The time spans are recorded into logarithmic buckets, each one split into {@value #SUB_BUCKETS}
+ * linear sub-buckets, so any retrieved value is accurate to about 6 percent.
+ */
+public class Histogram {
+
+    static final int SUB_BUCKETS = 16;
+    static final int SIZE = (64 - 3) * SUB_BUCKETS;
+
+    private static final int SUB_BITS = 4;
+    private static final String TO_STRING_FORMAT = "Histogram(count(%d), p50(%d), p99(%d), max(%d))";
+
+    private final long[] counts;
+    private final long count;
+
+    Histogram(final long[] counts) {
+        long total = 0;
+        for (final long value : counts) {
+            total += value;
+        }
+        this.counts = counts;
+        this.count = total;
+    }
+
+    /**
+     * Determines the index of the bucket that records the given value.
+     */
+    static int index(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) Math.max(0, value);
+        } else {
+            final int exponent = 63 - Long.numberOfLeadingZeros(value);
+            final int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+            return ((exponent - SUB_BITS + 1) * SUB_BUCKETS) + sub;
+        }
+    }
+
+    /**
+     * Determines the highest value recorded by the bucket of the given index.
+     */
+    static long value(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        } else {
+            final int exponent = (index / SUB_BUCKETS) + SUB_BITS - 1;
+            final long sub = SUB_BUCKETS + (index % SUB_BUCKETS);
+            return ((sub + 1) << (exponent - SUB_BITS)) - 1;
+        }
+    }
+
+    /**
+     * The number of recorded time spans.
+     */
+    public final long getCount() {
+        return count;
+    }
+
+    /**
+     * The (approximated) arithmetic mean of the recorded time spans or {@code 0} if there are none.
+     */
+    public final long getMean() {
+        double sum = 0;
+        for (int index = 0; index < counts.length; ++index) {
+            sum += (double) counts[index] * value(index);
+        }
+        return (0 == count) ? 0 : Math.round(sum / count);
+    }
+
+    /**
+     * The (approximated) maximum of the recorded time spans or {@code 0} if there are none.
+     */
+    public final long getMax() {
+        for (int index = counts.length - 1; index >= 0; --index) {
+            if (0 < counts[index]) {
+                return value(index);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * The (approximated) time span that is not exceeded by the given percentage of the recorded time spans
+     * or {@code 0} if there are none.
+     *
+     * @param percentile A percentage in the range from {@code 0.0} to {@code 100.0}.
+     * @throws IllegalArgumentException when {@code percentile} is out of range.
+     */
+    public final long getValueAt(final double percentile) throws IllegalArgumentException {
+        if ((0.0 > percentile) || (100.0 < percentile)) {
+            throw new IllegalArgumentException("percentile out of range: " + percentile);
+        }
+        final long limit = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+        long sum = 0;
+        for (int index = 0; index < counts.length; ++index) {
+            sum += counts[index];
+            if (sum >= limit) {
+                return value(index);
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public final String toString() {
+        return String.format(TO_STRING_FORMAT, count, getValueAt(50), getValueAt(99), getMax());
+    }
+}
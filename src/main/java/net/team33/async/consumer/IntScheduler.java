@@ -0,0 +1,176 @@
+package net.team33.async.consumer;
+
+import java.util.function.BiFunction;
+import java.util.function.IntConsumer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * {@link IntConsumer} implementation for the asynchronous processing of {@code int} messages in separate worker
+ * threads.
+ * <p/>
+ * Works like a {@link Scheduler}, but neither boxes the messages nor allocates anything per message:
+ * the messages are queued in a growable primitive ring buffer (four bytes per queued message)
+ * and passed to an {@link IntConsumer} target.
+ *
+ * @author AKK - Andreas Kluge-Kaindl, Bremen (de)
+ * @since team33-async-8.0.1
+ */
+@SuppressWarnings("UnusedDeclaration")
+public class IntScheduler extends PrimitiveScheduler<int[]> implements IntConsumer {
+
+    private final IntRing queue = new IntRing();
+    private final IntConsumer target;
+
+    private IntScheduler(final Builder origin) {
+        super(origin.strategy, origin.batchSize, origin.keepAlive, origin.newThread);
+        this.target = origin.target;
+    }
+
+    /**
+     * @param strategy The strategy to launch worker threads.
+     * @param target   The target to finally process the messages.
+     */
+    public static Builder builder(final Strategy strategy, final IntConsumer target) {
+        return new Builder(strategy, target);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * <b>This implementation</b> atomically queues the message for asynchronous processing.
+     *
+     * @throws IllegalStateException if {@linkplain #stop() stopped} and not yet {@linkplain #start() restarted}.
+     * @see Scheduler#accept(Object)
+     */
+    @Override
+    public final void accept(final int message) throws IllegalStateException {
+        lock.lock();
+        try {
+            requireReady();
+            queue.add(message);
+            dispatch(1);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Atomically queues some messages for asynchronous processing.
+     *
+     * @throws IllegalStateException if {@linkplain #stop() stopped} and not yet {@linkplain #start() restarted}.
+     * @see Scheduler#acceptAll(Iterable)
+     */
+    public final void acceptAll(final int... messages) throws IllegalStateException {
+        lock.lock();
+        try {
+            requireReady();
+            for (final int message : messages) {
+                queue.add(message);
+            }
+            dispatch(messages.length);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Causes the scheduler to stop normal operation as soon as possible.
+     *
+     * @return The un-queued messages in their original order.
+     * @see Scheduler#stopASAP()
+     */
+    public final int[] stopASAP() {
+        lock.lock();
+        try {
+            stop();
+            final int[] result = queue.clear();
+            signalIfQuiescent();
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    final int queued() {
+        return queue.size();
+    }
+
+    @Override
+    final int[] newBuffer(final int batchSize) {
+        return new int[batchSize];
+    }
+
+    @Override
+    final int drain(final int[] buffer) {
+        return queue.poll(buffer);
+    }
+
+    @Override
+    final void process(final int[] buffer, final int count) {
+        for (int index = 0; index < count; ++index) {
+            try {
+                target.accept(buffer[index]);
+            } catch (final Throwable caught) {
+                problems.add(caught);
+            }
+        }
+    }
+
+    public static class Builder {
+
+        private final Strategy strategy;
+        private final IntConsumer target;
+        private int batchSize = 16;
+        private long keepAlive = 0;
+        private BiFunction<Runnable, String, Thread> newThread = Thread::new;
+
+        private Builder(final Strategy strategy, final IntConsumer target) throws NullPointerException {
+            this.strategy = requireNonNull(strategy);
+            this.target = requireNonNull(target);
+        }
+
+        /**
+         * Sets the maximum number of messages a worker thread moves from the queue to its own buffer at once.
+         * The target receives them one by one anyway.
+         * <p/>
+         * Default is {@code 16}.
+         *
+         * @throws IllegalArgumentException when {@code batchSize} is less than {@code 1}.
+         */
+        public final Builder setBatchSize(final int batchSize) throws IllegalArgumentException {
+            if (1 > batchSize) {
+                throw new IllegalArgumentException("1 > batchSize (" + batchSize + ")");
+            } else {
+                this.batchSize = batchSize;
+                return this;
+            }
+        }
+
+        /**
+         * @see Scheduler.Builder#setKeepAlive(long)
+         */
+        public final Builder setKeepAlive(final long millis) throws IllegalArgumentException {
+            if (0 > millis) {
+                throw new IllegalArgumentException("0 > millis (" + millis + ")");
+            } else {
+                this.keepAlive = millis;
+                return this;
+            }
+        }
+
+        /**
+         * @see Scheduler.Builder#setNewThread(BiFunction)
+         */
+        public final Builder setNewThread(final BiFunction<Runnable, String, Thread> newThread)
+                throws NullPointerException {
+            this.newThread = requireNonNull(newThread);
+            return this;
+        }
+
+        public IntScheduler build() {
+            return new IntScheduler(this);
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package net.team33.async.consumer;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A write-ahead log of accepted and done messages, divided into segment files.
+ * <p/>
+ * Appending a message is made durable by group commit: while one thread forces the log to the storage device,
+ * other threads append further messages and then wait until a single subsequent force covers them all.
+ * Done messages are logged without forcing: after a crash, a message may be replayed although it was
+ * processed (at-least-once). A segment file is deleted as soon as all messages accepted in it and in all previous
+ * segments are done.
+ * <p/>
+ * Thread-safe.
+ */
+class Journal implements Closeable {
+
+    private static final String FILE_FORMAT = "journal-%016d.log";
+    private static final String FILE_PREFIX = "journal-";
+    private static final String FILE_SUFFIX = ".log";
+    private static final byte ACCEPTED = 1;
+    private static final byte DONE = 2;
+    /**
+     * Record type (byte), message id (long), [length (int), encoded message].
+     */
+    private static final int HEADER_SIZE = 1 + 8 + 4;
+
+    private final Lock lock = new ReentrantLock();
+    /**
+     * Signalled when a force has finished.
+     */
+    private final Condition forced = lock.newCondition();
+    private final File directory;
+    private final long segmentSize;
+    private final Deque<Segment> segments = new ArrayDeque<>(0);
+    private ByteBuffer buffer = ByteBuffer.allocate(256);
+    private Segment current;
+    private long lastId;
+    /**
+     * The number of records appended so far, respectively covered by a force.
+     */
+    private long appended = 0;
+    private long synced = 0;
+    /**
+     * Indicates that a (leading) thread is currently forcing the log.
+     */
+    private boolean syncing = false;
+    /**
+     * Indicates that the journal is {@linkplain #close() closed}.
+     */
+    private boolean closed = false;
+
+    private Journal(final File directory, final long segmentSize, final long number, final long lastId)
+            throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.lastId = lastId;
+        this.current = new Segment(directory, number, lastId + 1);
+        this.segments.addLast(current);
+    }
+
+    /**
+     * Opens a new journal in the given directory and retrieves the messages of a previous journal in that directory
+     * that have been accepted but not done. The previous journal remains untouched
+     * until {@link #retire(Recovery)} is called.
+     */
+    static Recovery open(final File directory, final long segmentSize) throws IOException {
+        final File[] files = directory.listFiles((dir, name) -> name.startsWith(FILE_PREFIX)
+                && name.endsWith(FILE_SUFFIX));
+        final File[] previous = (null == files) ? new File[0] : files;
+        Arrays.sort(previous);
+
+        final Map<Long, byte[]> unfinished = new LinkedHashMap<>(0);
+        long maxId = 0;
+        for (final File file : previous) {
+            maxId = Math.max(maxId, read(file, unfinished));
+        }
+        final Journal journal = new Journal(directory, segmentSize, number(previous) + 1, maxId);
+        return new Recovery(journal, previous, new ArrayList<>(unfinished.values()));
+    }
+
+    private static long number(final File[] files) {
+        if (0 == files.length) {
+            return 0;
+        }
+        final String name = files[files.length - 1].getName();
+        return Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+    }
+
+    /**
+     * Reads a segment file, stops at a torn record at the end.
+     *
+     * @return The maximum message id found.
+     */
+    private static long read(final File file, final Map<Long, byte[]> unfinished) throws IOException {
+        long maxId = 0;
+        try (final InputStream in = new BufferedInputStream(new FileInputStream(file));
+             final DataInputStream data = new DataInputStream(in)) {
+            while (true) {
+                final byte type = data.readByte();
+                final long id = data.readLong();
+                final int length = data.readInt();
+                final byte[] bytes = new byte[length];
+                data.readFully(bytes);
+                maxId = Math.max(maxId, id);
+                if (ACCEPTED == type) {
+                    unfinished.put(id, bytes);
+                } else {
+                    unfinished.remove(id);
+                }
+            }
+        } catch (final EOFException ignored) {
+            // End of file or torn record at the end: the latter was never forced, so its message was never accepted.
+        }
+        return maxId;
+    }
+
+    /**
+     * Appends an accepted message and waits until it is durable.
+     *
+     * @return The id of the message.
+     */
+    final long accept(final byte[] bytes) throws UncheckedIOException {
+        final long id;
+        final long record;
+        lock.lock();
+        try {
+            requireOpen();
+            id = ++lastId;
+            record = append(ACCEPTED, id, bytes);
+            current.pending += 1;
+        } finally {
+            lock.unlock();
+        }
+        sync(record);
+        return id;
+    }
+
+    /**
+     * Appends some accepted messages and waits until they are durable.
+     *
+     * @return The id of the first message, the others follow consecutively.
+     */
+    final long acceptAll(final List<byte[]> messages) throws UncheckedIOException {
+        final long first;
+        long record = 0;
+        lock.lock();
+        try {
+            requireOpen();
+            first = lastId + 1;
+            for (final byte[] bytes : messages) {
+                record = append(ACCEPTED, ++lastId, bytes);
+                current.pending += 1;
+            }
+        } finally {
+            lock.unlock();
+        }
+        sync(record);
+        return first;
+    }
+
+    /**
+     * Throws an {@link IllegalStateException} if closed. Requires the lock to be held.
+     */
+    private void requireOpen() throws IllegalStateException {
+        if (closed) {
+            throw new IllegalStateException("closed");
+        }
+    }
+
+    /**
+     * Appends a done message (without waiting until it is durable) and deletes the leading segments whose messages
+     * are all done.
+     * <p/>
+     * Does nothing if the journal is already closed: the message remains unfinished and will be replayed,
+     * just as if the process had crashed while processing it.
+     */
+    final void done(final long id) throws UncheckedIOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            append(DONE, id, null);
+            final Iterator<Segment> iterator = segments.iterator();
+            while (iterator.hasNext()) {
+                final Segment segment = iterator.next();
+                if ((segment.firstId <= id) && ((segment == current) || (id < segment.next.firstId))) {
+                    segment.pending -= 1;
+                    purge();
+                    return;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends a record. Requires the lock to be held.
+     *
+     * @return The sequence number of the record.
+     */
+    private long append(final byte type, final long id, final byte[] bytes) throws UncheckedIOException {
+        final int length = (null == bytes) ? 0 : bytes.length;
+        if (buffer.capacity() < HEADER_SIZE + length) {
+            buffer = ByteBuffer.allocate(HEADER_SIZE + length);
+        }
+        buffer.clear();
+        buffer.put(type).putLong(id).putInt(length);
+        if (null != bytes) {
+            buffer.put(bytes);
+        }
+        try {
+            current.file.write(buffer.array(), 0, buffer.position());
+            current.size += buffer.position();
+        } catch (final IOException caught) {
+            throw new UncheckedIOException(caught);
+        }
+        return ++appended;
+    }
+
+    /**
+     * Waits until the given record is durable. Either forces the log as the leader of a group commit
+     * or waits for a concurrent leader.
+     */
+    private void sync(final long record) throws UncheckedIOException {
+        lock.lock();
+        try {
+            while (synced < record) {
+                if (syncing) {
+                    forced.awaitUninterruptibly();
+                } else {
+                    lead();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forces the log up to the currently appended records. Requires the lock to be held but temporarily releases it
+     * while forcing, so other threads may append further records meanwhile.
+     */
+    private void lead() throws UncheckedIOException {
+        syncing = true;
+        final long target = appended;
+        final RandomAccessFile file = current.file;
+        try {
+            lock.unlock();
+            try {
+                file.getFD().sync();
+            } finally {
+                lock.lock();
+            }
+            synced = Math.max(synced, target);
+            if (current.size >= segmentSize) {
+                roll();
+            }
+        } catch (final IOException caught) {
+            throw new UncheckedIOException(caught);
+        } finally {
+            syncing = false;
+            forced.signalAll();
+        }
+    }
+
+    /**
+     * Continues the log in a new segment file. Requires the lock to be held.
+     */
+    private void roll() throws IOException {
+        current.file.getFD().sync();
+        synced = appended;
+        final Segment next = new Segment(directory, current.number + 1, lastId + 1);
+        current.next = next;
+        current.file.close();
+        current = next;
+        segments.addLast(next);
+        // Segments may have been finished meanwhile ...
+        purge();
+    }
+
+    /**
+     * Deletes the leading segments whose messages are all done. Requires the lock to be held.
+     * <p/>
+     * A finished segment behind an unfinished one must be kept: the done records of the messages accepted in the
+     * unfinished segment may have been appended to it, and deleting it would cause those messages to be replayed.
+     */
+    private void purge() {
+        while ((segments.peekFirst() != current) && (0 == segments.peekFirst().pending)) {
+            segments.removeFirst().delete();
+        }
+    }
+
+    /**
+     * Deletes the files of a previous journal after its unfinished messages have been accepted anew.
+     */
+    static void retire(final Recovery recovery) {
+        for (final File file : recovery.previous) {
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Forces and closes the current segment file, if not already done. Waits for a concurrent force to finish.
+     * Further messages are not accepted, further done messages are ignored.
+     */
+    @Override
+    public final void close() throws IOException {
+        lock.lock();
+        try {
+            while (syncing) {
+                forced.awaitUninterruptibly();
+            }
+            if (!closed) {
+                closed = true;
+                current.file.getFD().sync();
+                current.file.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The result of {@linkplain #open(File, long) opening} a journal.
+     */
+    static final class Recovery {
+
+        final Journal journal;
+        final List<byte[]> unfinished;
+        private final File[] previous;
+
+        private Recovery(final Journal journal, final File[] previous, final List<byte[]> unfinished) {
+            this.journal = journal;
+            this.previous = previous;
+            this.unfinished = unfinished;
+        }
+    }
+
+    /**
+     * A segment file. Accessed by {@link RandomAccessFile} rather than by a {@link java.nio.channels.FileChannel}
+     * because the latter gets closed when a thread using it is interrupted.
+     */
+    private static final class Segment {
+
+        private final File path;
+        private final long number;
+        private final long firstId;
+        private final RandomAccessFile file;
+        /**
+         * The number of bytes appended so far. Guarded by the lock of the journal.
+         */
+        private long size = 0;
+        /**
+         * The number of messages accepted in this segment and not yet done. Guarded by the lock of the journal.
+         */
+        private int pending = 0;
+        /**
+         * The successor, {@code null} as long as this is the current segment.
+         */
+        private Segment next = null;
+
+        private Segment(final File directory, final long number, final long firstId) throws IOException {
+            this.path = new File(directory, String.format(FILE_FORMAT, number));
+            this.number = number;
+            this.firstId = firstId;
+            this.file = new RandomAccessFile(path, "rw");
+        }
+
+        private void delete() {
+            try {
+                file.close();
+            } catch (final IOException ignored) {
+                // the file is going to be deleted anyway ...
+            }
+            if (!path.delete()) {
+                path.deleteOnExit();
+            }
+        }
+    }
+}
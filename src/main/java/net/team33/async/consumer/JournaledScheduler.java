@@ -0,0 +1,352 @@
+package net.team33.async.consumer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Generic {@link java.util.function.Consumer Consumer} implementation for the asynchronous processing of
+ * messages in separate worker threads that survives a crash of the process.
+ * <p/>
+ * Each passed message is appended to a write-ahead journal in a local directory, encoded by a {@link Codec}, and
+ * made durable before it is queued for processing. The journal is forced to the storage device by group commit:
+ * concurrent producers (or the messages of one {@link #acceptAll(Iterable)}) share a single force. So durability
+ * costs a fraction of a force per message. When a worker thread has processed a message, the journal records
+ * that (without forcing).
+ * <p/>
+ * When built, the scheduler replays all messages of a previous journal in the same directory that have been
+ * accepted but not processed. A message may be processed twice when the process crashes just after processing it
+ * (at-least-once).
+ *
+ * @param <MSG> The type of messages to be consumed.
+ * @author AKK - Andreas Kluge-Kaindl, Bremen (de)
+ * @since team33-async-8.0.1
+ */
+@SuppressWarnings("UnusedDeclaration")
+public class JournaledScheduler<MSG> implements Consumer<MSG>, Closeable {
+
+    private static final String TO_STRING_FORMAT = "%s(%s)";
+
+    private final Journal journal;
+    private final Codec<MSG> codec;
+    private final Consumer<? super MSG> target;
+    private final Scheduler<Entry<MSG>> entries;
+
+    private JournaledScheduler(final Builder<MSG> origin, final Journal journal) {
+        this.journal = journal;
+        this.codec = origin.codec;
+        this.target = origin.target;
+        this.entries = Scheduler.builder(origin.strategy, this::process)
+                                .setKeepAlive(origin.keepAlive)
+                                .setNewThread(origin.newThread)
+                                .build();
+    }
+
+    /**
+     * @param strategy  The strategy to launch worker threads.
+     * @param target    The target to finally process the messages.
+     * @param directory The directory to hold the journal.
+     * @param codec     The codec to journal the messages.
+     */
+    public static <MSG> Builder<MSG> builder(
+            final Strategy strategy, final Consumer<MSG> target, final File directory, final Codec<MSG> codec) {
+        return new Builder<>(strategy, target, directory, codec);
+    }
+
+    /**
+     * @see Scheduler#getProblems()
+     */
+    public final List<Throwable> getProblems() {
+        return entries.getProblems();
+    }
+
+    /**
+     * @see Scheduler#drainProblems()
+     */
+    public final List<Throwable> drainProblems() {
+        return entries.drainProblems();
+    }
+
+    /**
+     * @see Scheduler#throwProblems()
+     */
+    public final void throwProblems() throws Throwable {
+        entries.throwProblems();
+    }
+
+    @Override
+    public final String toString() {
+        return format(TO_STRING_FORMAT, getClass().getSimpleName(), entries);
+    }
+
+    /**
+     * @see Scheduler#getRunning()
+     */
+    public final int getRunning() {
+        return entries.getRunning();
+    }
+
+    /**
+     * @see Scheduler#getLoad()
+     */
+    public final int getLoad() {
+        return entries.getLoad();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * <b>This implementation</b> journals the message, waits until it is durable and then queues it for asynchronous
+     * processing.
+     *
+     * @param message The message, not {@code null}.
+     *
+     * @throws NullPointerException  if {@code message} is {@code null}.
+     * @throws IllegalStateException if {@linkplain #stop() stopped} and not
+     *                               yet {@linkplain #start() restarted}
+     *                               (basically unspecific for Consumers).
+     * @throws UncheckedIOException  if the message can't be journaled.
+     */
+    @Override
+    public final void accept(final MSG message) throws NullPointerException, IllegalStateException {
+        requireNonNull(message);
+        if (entries.isStopped()) {
+            throw new IllegalStateException("not ready");
+        }
+        final long id = journal.accept(codec.encode(message));
+        queue(new Entry<>(id, message, null));
+    }
+
+    /**
+     * Journals some messages, waits until they all are durable (by a single force) and then queues them for
+     * asynchronous processing.
+     *
+     * @throws NullPointerException  if {@code messages} is or contains {@code null}.
+     * @throws IllegalStateException if {@linkplain #stop() stopped} and not yet {@linkplain #start() restarted}.
+     * @throws UncheckedIOException  if the messages can't be journaled.
+     */
+    public final void acceptAll(final Iterable<? extends MSG> messages)
+            throws NullPointerException, IllegalStateException {
+        if (entries.isStopped()) {
+            throw new IllegalStateException("not ready");
+        }
+        final List<MSG> list = new ArrayList<>(0);
+        final List<byte[]> encoded = new ArrayList<>(0);
+        for (final MSG message : messages) {
+            list.add(requireNonNull(message));
+            encoded.add(codec.encode(message));
+        }
+        queueAll(journal.acceptAll(encoded), list, null);
+    }
+
+    /**
+     * Queues some journaled messages with consecutive ids, given as messages or as encoded messages, at once.
+     */
+    private void queueAll(final long first, final List<MSG> messages, final List<byte[]> encoded) {
+        final int size = (null == messages) ? encoded.size() : messages.size();
+        final List<Entry<MSG>> list = new ArrayList<>(size);
+        for (int index = 0; index < size; ++index) {
+            list.add(new Entry<>(first + index,
+                                 (null == messages) ? null : messages.get(index),
+                                 (null == messages) ? encoded.get(index) : null));
+        }
+        final ListIterator<Entry<MSG>> iterator = list.listIterator();
+        try {
+            entries.acceptAll(() -> iterator);
+        } catch (final RuntimeException caught) {
+            // The messages preceding the failed one remain queued, the others are not accepted,
+            // so they must not be replayed ...
+            for (int index = Math.max(0, iterator.nextIndex() - 1); index < size; ++index) {
+                journal.done(first + index);
+            }
+            throw caught;
+        }
+    }
+
+    private void queue(final Entry<MSG> entry) {
+        try {
+            entries.accept(entry);
+        } catch (final RuntimeException caught) {
+            // The message is not accepted, so it must not be replayed ...
+            journal.done(entry.id);
+            throw caught;
+        }
+    }
+
+    private MSG messageOf(final Entry<MSG> entry) {
+        return (null == entry.message) ? codec.decode(entry.encoded) : entry.message;
+    }
+
+    private void process(final Entry<MSG> entry) {
+        try {
+            target.accept(messageOf(entry));
+        } finally {
+            journal.done(entry.id);
+        }
+    }
+
+    /**
+     * @see Scheduler#join(long)
+     */
+    public final boolean join(final long millis) throws IllegalArgumentException, InterruptedException {
+        return entries.join(millis);
+    }
+
+    /**
+     * @see Scheduler#whenDrained()
+     */
+    public final CompletableFuture<Void> whenDrained() {
+        return entries.whenDrained();
+    }
+
+    /**
+     * @see Scheduler#start()
+     */
+    public final void start() {
+        entries.start();
+    }
+
+    /**
+     * @see Scheduler#stop()
+     */
+    public final void stop() {
+        entries.stop();
+    }
+
+    /**
+     * Causes the scheduler to stop normal operation as soon as possible.
+     * The returned messages are handed back to the caller and so won't be replayed
+     * (a replayed message that can't be decoded is omitted).
+     *
+     * @see Scheduler#stopASAP()
+     */
+    public final List<MSG> stopASAP() {
+        final List<Entry<MSG>> stopped = entries.stopASAP();
+        final List<MSG> result = new ArrayList<>(stopped.size());
+        for (final Entry<MSG> entry : stopped) {
+            try {
+                result.add(messageOf(entry));
+            } catch (final RuntimeException ignored) {
+                // a corrupt journaled message is lost anyway ...
+            }
+            journal.done(entry.id);
+        }
+        return result;
+    }
+
+    public final boolean isStopped() {
+        return entries.isStopped();
+    }
+
+    /**
+     * Stops the scheduler and closes the journal. Should be called when all messages are processed.
+     * <p/>
+     * Messages still in processing may finish but are not recorded as done, so they are replayed when the journal
+     * is opened again, just as if the process had crashed meanwhile.
+     */
+    @Override
+    public final void close() throws IOException {
+        entries.stop();
+        journal.close();
+    }
+
+    public static class Builder<MSG> {
+
+        private final Strategy strategy;
+        private final Consumer<MSG> target;
+        private final File directory;
+        private final Codec<MSG> codec;
+        private long segmentSize = 64 << 20;
+        private long keepAlive = 0;
+        private BiFunction<Runnable, String, Thread> newThread = Thread::new;
+
+        private Builder(final Strategy strategy, final Consumer<MSG> target, final File directory,
+                        final Codec<MSG> codec) throws NullPointerException {
+            this.strategy = requireNonNull(strategy);
+            this.target = requireNonNull(target);
+            this.directory = requireNonNull(directory);
+            this.codec = requireNonNull(codec);
+        }
+
+        /**
+         * Sets the size of a journal segment file, after which the journal continues in a new segment file.
+         * A segment file is deleted as soon as all messages journaled in it are processed.
+         * <p/>
+         * Default is 64 MiB.
+         *
+         * @throws IllegalArgumentException when {@code bytes} is less than {@code 1}.
+         */
+        public final Builder<MSG> setSegmentSize(final long bytes) throws IllegalArgumentException {
+            if (1 > bytes) {
+                throw new IllegalArgumentException("1 > bytes (" + bytes + ")");
+            } else {
+                this.segmentSize = bytes;
+                return this;
+            }
+        }
+
+        /**
+         * @see Scheduler.Builder#setKeepAlive(long)
+         */
+        public final Builder<MSG> setKeepAlive(final long millis) throws IllegalArgumentException {
+            if (0 > millis) {
+                throw new IllegalArgumentException("0 > millis (" + millis + ")");
+            } else {
+                this.keepAlive = millis;
+                return this;
+            }
+        }
+
+        /**
+         * @see Scheduler.Builder#setNewThread(BiFunction)
+         */
+        public final Builder<MSG> setNewThread(final BiFunction<Runnable, String, Thread> newThread)
+                throws NullPointerException {
+            this.newThread = requireNonNull(newThread);
+            return this;
+        }
+
+        /**
+         * Builds a new scheduler, opens a new journal and replays the unprocessed messages of a previous journal
+         * in the same directory, if any. Deletes the previous journal afterwards.
+         *
+         * @throws IOException if the journal can't be opened or the previous journal can't be read.
+         */
+        public JournaledScheduler<MSG> build() throws IOException {
+            final Journal.Recovery recovery = Journal.open(directory, segmentSize);
+            final JournaledScheduler<MSG> result = new JournaledScheduler<>(this, recovery.journal);
+            if (!recovery.unfinished.isEmpty()) {
+                // Messages are decoded lazily by the worker threads, so a corrupt message is just a problem ...
+                result.queueAll(recovery.journal.acceptAll(recovery.unfinished), null, recovery.unfinished);
+            }
+            Journal.retire(recovery);
+            return result;
+        }
+    }
+
+    /**
+     * A journaled message, given as message or as encoded message.
+     */
+    private static final class Entry<MSG> {
+
+        private final long id;
+        private final MSG message;
+        private final byte[] encoded;
+
+        private Entry(final long id, final MSG message, final byte[] encoded) {
+            this.id = id;
+            this.message = message;
+            this.encoded = encoded;
+        }
+    }
+}
@@ -0,0 +1,426 @@
+package net.team33.async.consumer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Generic {@link java.util.function.Consumer Consumer} implementation for the asynchronous processing of
+ * messages in separate worker threads, keeping the order of messages with the same key.
+ * <p/>
+ * Messages with the same key are processed strictly one after another in the order they were passed.
+ * Messages with different keys are processed in parallel as far as the {@link Strategy} allows.
+ * <p/>
+ * Pending messages of a key are held in a lane, which exists only as long as there are pending messages
+ * for that key. A lane is processed by one worker thread at a time for a limited number of messages
+ * (see {@link Builder#setQuantum(int)}) before it is queued again, so a busy key can't monopolize a worker thread.
+ * The {@link Strategy} is applied to the number of lanes waiting for or in processing.
+ *
+ * @param <K>   The type of keys.
+ * @param <MSG> The type of messages to be consumed.
+ * @author AKK - Andreas Kluge-Kaindl, Bremen (de)
+ * @since team33-async-8.0.1
+ */
+@SuppressWarnings("UnusedDeclaration")
+public class KeyedScheduler<K, MSG> implements Consumer<MSG> {
+
+    private static final String TO_STRING_FORMAT = "%s(%s)";
+    /**
+     * The number of keys above which the map of lanes is re-created when it gets empty.
+     */
+    private static final int SHRINK_THRESHOLD = 64;
+
+    private final Problems problems = new Problems();
+    private final Lock lock = new ReentrantLock();
+    private final Scheduler<Lane> lanesScheduler;
+
+    private final Function<? super MSG, ? extends K> keyOf;
+    private final Consumer<? super MSG> target;
+    private final int quantum;
+
+    /**
+     * The number of messages passed and not yet finally processed. Guarded by the lock.
+     */
+    private int load = 0;
+    /**
+     * The lanes by key. Guarded by the lock.
+     * <p/>
+     * A {@link HashMap} never shrinks its table, so after a burst of many distinct keys the map is re-created
+     * as soon as it gets empty. Otherwise it would keep the table of its peak size for good.
+     */
+    private Map<K, Lane> lanes = new HashMap<>(0);
+    /**
+     * The max. number of lanes since the map was (re-)created. Guarded by the lock.
+     */
+    private int peakLanes = 0;
+    /**
+     * Indicates if the instance is ready to receive (and process) messages. Guarded by the lock.
+     */
+    private boolean ready = true;
+
+    private KeyedScheduler(final Builder<K, MSG> origin) {
+        this.keyOf = origin.keyOf;
+        this.target = origin.target;
+        this.quantum = origin.quantum;
+        this.lanesScheduler = Scheduler.builder(origin.strategy, this::process)
+                                       .setKeepAlive(origin.keepAlive)
+                                       .setNewThread(origin.newThread)
+                                       .build();
+    }
+
+    /**
+     * @param strategy The strategy to launch worker threads.
+     * @param keyOf    A function to determine the key of a message.
+     * @param target   The target to finally process the messages.
+     */
+    public static <K, MSG> Builder<K, MSG> builder(
+            final Strategy strategy, final Function<MSG, K> keyOf, final Consumer<MSG> target) {
+        return new Builder<>(strategy, keyOf, target);
+    }
+
+    private static void throwProblems(final Iterator<Throwable> iterator) throws Throwable {
+        if (iterator.hasNext()) {
+            final Throwable head = iterator.next();
+            while (iterator.hasNext()) {
+                head.addSuppressed(iterator.next());
+            }
+            throw head;
+        }
+    }
+
+    /**
+     * Retrieves a list of the problems that may have been occurred during asynchronous processing of incoming
+     * messages, in order of occurrence.
+     * <p/>
+     * Only the most recent problems are retained (up to 1024), older ones are dropped
+     * (see {@link #getDroppedProblems()}).
+     */
+    public final List<Throwable> getProblems() {
+        return problems.list();
+    }
+
+    /**
+     * Removes and retrieves the retained problems in order of occurrence.
+     *
+     * @see #getProblems()
+     */
+    public final List<Throwable> drainProblems() {
+        return problems.drain();
+    }
+
+    /**
+     * The number of problems dropped so far because too many problems have been occurred to retain them all.
+     */
+    public final long getDroppedProblems() {
+        return problems.getDropped();
+    }
+
+    /**
+     * Throws an accumulated exception, if there are problems.
+     *
+     * @throws Throwable if there is at least one problem.
+     */
+    public final void throwProblems() throws Throwable {
+        throwProblems(getProblems().iterator());
+    }
+
+    @Override
+    public final String toString() {
+        return format(TO_STRING_FORMAT, getClass().getSimpleName(), lanesScheduler);
+    }
+
+    /**
+     * The number of currently running worker threads, greater or equal to {@code 0}.
+     *
+     * @see Scheduler#getRunning()
+     */
+    public final int getRunning() {
+        return lanesScheduler.getRunning();
+    }
+
+    /**
+     * The number of keys with messages passed and not yet finally processed, greater or equal to {@code 0}.
+     */
+    public final int getKeys() {
+        lock.lock();
+        try {
+            return lanes.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The number of messages passed and not yet finally processed, greater or equal to {@code 0}.
+     */
+    public final int getLoad() {
+        lock.lock();
+        try {
+            return load;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * <b>This implementation</b> queues the message behind any pending messages with the same key
+     * and starts a new worker thread if appropriate or necessary.
+     *
+     * @param message The message, not {@code null}.
+     *
+     * @throws NullPointerException  if {@code message} is {@code null}.
+     * @throws IllegalStateException if {@linkplain #stop() stopped} and not
+     *                               yet {@linkplain #start() restarted}
+     *                               (basically unspecific for Consumers).
+     */
+    @Override
+    public final void accept(final MSG message) throws NullPointerException, IllegalStateException {
+        final K key = keyOf.apply(requireNonNull(message));
+        final Lane newLane;
+        lock.lock();
+        try {
+            if (ready) {
+                final Lane lane = lanes.get(key);
+                if (null == lane) {
+                    newLane = new Lane(key);
+                    newLane.messages.add(message);
+                    lanes.put(key, newLane);
+                    peakLanes = Math.max(peakLanes, lanes.size());
+                } else {
+                    newLane = null;
+                    lane.messages.add(message);
+                }
+                load += 1;
+            } else {
+                throw new IllegalStateException("not ready");
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (null != newLane) {
+            lanesScheduler.accept(newLane);
+        }
+    }
+
+    /**
+     * Called by a worker thread of the {@link #lanesScheduler} to process (some) pending messages of a lane.
+     */
+    private void process(final Lane lane) {
+        MSG message = poll(lane, false);
+        for (int count = 1; null != message; ++count) {
+            try {
+                target.accept(message);
+            } catch (final Throwable caught) {
+                problems.add(caught);
+            }
+            message = poll(lane, count >= quantum);
+        }
+    }
+
+    /**
+     * Called by {@link #process(Lane)} to finish the previous message (if any) and to poll the next one.
+     *
+     * @param pause {@code true} if the lane has to be queued again (rather than further processed) as long as there
+     *              are messages pending.
+     * @return The next message to be processed or {@code null} if the lane is empty and removed or queued again.
+     */
+    private MSG poll(final Lane lane, final boolean pause) {
+        final boolean requeue;
+        lock.lock();
+        try {
+            if (lane.started) {
+                load -= 1;
+            } else {
+                lane.started = true;
+            }
+            if (lane.messages.isEmpty()) {
+                lanes.remove(lane.key);
+                if (lanes.isEmpty() && (SHRINK_THRESHOLD < peakLanes)) {
+                    lanes = new HashMap<>(0);
+                    peakLanes = 0;
+                }
+                return null;
+            } else if (pause) {
+                lane.started = false;
+                requeue = true;
+            } else {
+                return lane.messages.poll();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (requeue) {
+            lanesScheduler.accept(lane);
+        }
+        return null;
+    }
+
+    /**
+     * Blocks the calling thread until all queued messages are processed or a timeout occurs.
+     *
+     * @see Scheduler#join(long)
+     */
+    public final boolean join(final long millis) throws IllegalArgumentException, InterruptedException {
+        return lanesScheduler.join(millis);
+    }
+
+    /**
+     * Retrieves a future that completes as soon as all queued messages are processed.
+     *
+     * @see Scheduler#whenDrained()
+     */
+    public final CompletableFuture<Void> whenDrained() {
+        return lanesScheduler.whenDrained();
+    }
+
+    /**
+     * Causes the scheduler to (re)gain normal operation.
+     *
+     * @see Scheduler#start()
+     */
+    public final void start() {
+        lock.lock();
+        try {
+            ready = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Causes the scheduler to stop normal operation.
+     *
+     * @see Scheduler#stop()
+     */
+    public final void stop() {
+        lock.lock();
+        try {
+            ready = false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Causes the scheduler to stop normal operation as soon as possible.
+     * The messages not yet in processing are returned grouped by key, each group in its original order.
+     *
+     * @see Scheduler#stopASAP()
+     */
+    public final List<MSG> stopASAP() {
+        lock.lock();
+        try {
+            ready = false;
+            final List<MSG> result = new ArrayList<>(load);
+            for (final Lane lane : lanes.values()) {
+                result.addAll(lane.messages);
+                lane.messages.clear();
+            }
+            load -= result.size();
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public final boolean isStopped() {
+        lock.lock();
+        try {
+            return !ready;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public static class Builder<K, MSG> {
+
+        private final Strategy strategy;
+        private final Function<MSG, K> keyOf;
+        private final Consumer<MSG> target;
+        private int quantum = 16;
+        private long keepAlive = 0;
+        private BiFunction<Runnable, String, Thread> newThread = Thread::new;
+
+        private Builder(final Strategy strategy, final Function<MSG, K> keyOf, final Consumer<MSG> target)
+                throws NullPointerException {
+            this.strategy = requireNonNull(strategy);
+            this.keyOf = requireNonNull(keyOf);
+            this.target = requireNonNull(target);
+        }
+
+        /**
+         * Sets the maximum number of messages of one key a worker thread processes in a row
+         * before it turns to other keys.
+         * <p/>
+         * Default is {@code 16}.
+         *
+         * @throws IllegalArgumentException when {@code quantum} is less than {@code 1}.
+         */
+        public final Builder<K, MSG> setQuantum(final int quantum) throws IllegalArgumentException {
+            if (1 > quantum) {
+                throw new IllegalArgumentException("1 > quantum (" + quantum + ")");
+            } else {
+                this.quantum = quantum;
+                return this;
+            }
+        }
+
+        /**
+         * @see Scheduler.Builder#setKeepAlive(long)
+         */
+        public final Builder<K, MSG> setKeepAlive(final long millis) throws IllegalArgumentException {
+            if (0 > millis) {
+                throw new IllegalArgumentException("0 > millis (" + millis + ")");
+            } else {
+                this.keepAlive = millis;
+                return this;
+            }
+        }
+
+        /**
+         * @see Scheduler.Builder#setNewThread(BiFunction)
+         */
+        public final Builder<K, MSG> setNewThread(final BiFunction<Runnable, String, Thread> newThread)
+                throws NullPointerException {
+            this.newThread = requireNonNull(newThread);
+            return this;
+        }
+
+        public KeyedScheduler<K, MSG> build() {
+            return new KeyedScheduler<>(this);
+        }
+    }
+
+    /**
+     * Holds the pending messages of one key.
+     */
+    private class Lane {
+
+        private final K key;
+        private final Queue<MSG> messages = new ArrayDeque<>(1);
+        /**
+         * Indicates that a worker thread has started to process this lane in its current turn.
+         * Guarded by the lock of the {@link KeyedScheduler}.
+         */
+        private boolean started = false;
+
+        private Lane(final K key) {
+            this.key = key;
+        }
+    }
+}
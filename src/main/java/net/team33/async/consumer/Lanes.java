@@ -0,0 +1,145 @@
+package net.team33.async.consumer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * A {@link Backlog} of some FIFO lanes of different priorities.
+ * <p/>
+ * Lane {@code 0} has the highest priority. The lanes are drained weighted-fair (smooth weighted round robin):
+ * as long as some lanes hold elements, each of them gets a share of the polls according to its weight,
+ * so a lane of low priority is slowed down but never starved by the lanes of higher priority.
+ * <p/>
+ * Not thread-safe: the {@link Scheduler} accesses it only while holding its lock.
+ */
+class Lanes<E> implements Backlog<E> {
+
+    private final ToIntFunction<? super E> priority;
+    private final int[] weights;
+    private final int[] credits;
+    private final Backlog<E>[] rings;
+    private long stamp = 0;
+
+    Lanes(final ToIntFunction<? super E> priority, final int[] weights, final Supplier<Backlog<E>> newLane) {
+        this.priority = priority;
+        this.weights = weights.clone();
+        this.credits = new int[weights.length];
+        this.rings = newLanes(weights.length);
+        for (int index = 0; index < rings.length; ++index) {
+            rings[index] = newLane.get();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> Backlog<E>[] newLanes(final int count) {
+        return (Backlog<E>[]) new Backlog<?>[count];
+    }
+
+    /**
+     * Sums up the sizes of the lanes, which may lose elements on their own
+     * (e.g. a spilled element that can't be read back).
+     */
+    @Override
+    public final int size() {
+        int result = 0;
+        for (final Backlog<E> ring : rings) {
+            result += ring.size();
+        }
+        return result;
+    }
+
+    @Override
+    public final boolean isEmpty() {
+        for (final Backlog<E> ring : rings) {
+            if (!ring.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Appends an element to the lane determined by its priority.
+     * A priority out of range is treated as the nearest valid one.
+     */
+    @Override
+    public final void add(final E element, final long stamp) throws NullPointerException {
+        if (null == element) {
+            throw new NullPointerException("element == null");
+        }
+        final int lane = Math.max(0, Math.min(rings.length - 1, priority.applyAsInt(element)));
+        rings[lane].add(element, stamp);
+    }
+
+    /**
+     * Removes and retrieves the first element of the lane whose turn it is or {@code null} if empty.
+     */
+    @Override
+    public final E poll() {
+        E result = null;
+        while ((null == result) && !isEmpty()) {
+            result = remove(select());
+        }
+        return result;
+    }
+
+    private int select() {
+        int total = 0;
+        int selected = -1;
+        for (int index = 0; index < rings.length; ++index) {
+            if (!rings[index].isEmpty()) {
+                credits[index] += weights[index];
+                total += weights[index];
+                if ((0 > selected) || (credits[index] > credits[selected])) {
+                    selected = index;
+                }
+            }
+        }
+        credits[selected] -= total;
+        return selected;
+    }
+
+    /**
+     * Removes the first (the oldest) element of the lane of lowest priority that holds any elements.
+     */
+    @Override
+    public final E evict() {
+        for (int index = rings.length - 1; 0 <= index; --index) {
+            if (!rings[index].isEmpty()) {
+                return remove(index);
+            }
+        }
+        return null;
+    }
+
+    private E remove(final int lane) {
+        final Backlog<E> ring = rings[lane];
+        final E result = ring.poll();
+        stamp = ring.stamp();
+        if (ring.isEmpty()) {
+            // An emptied lane forfeits its credit (or debt) ...
+            credits[lane] = 0;
+        }
+        return result;
+    }
+
+    @Override
+    public final long stamp() {
+        return stamp;
+    }
+
+    /**
+     * Removes all elements and retrieves them in order of priority, each lane in its original order.
+     */
+    @Override
+    public final List<E> clear() {
+        final List<E> result = new ArrayList<>(size());
+        for (int index = 0; index < rings.length; ++index) {
+            result.addAll(rings[index].clear());
+            credits[index] = 0;
+        }
+        return result;
+    }
+}
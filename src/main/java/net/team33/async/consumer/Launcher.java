@@ -1,5 +1,6 @@
 package net.team33.async.consumer;
 
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiFunction;
 
@@ -18,7 +19,6 @@ class Launcher {
      */
     private static final AtomicLong INSTANCES = new AtomicLong(0);
     private static final String TO_STRING_FORMAT = "Launcher(instance(%s), started(%s))";
-    private static final String NAME_FORMAT = "%s[%s:%s]";
 
     /**
      * 1-based unique index number of this instance.
@@ -34,11 +34,29 @@ class Launcher {
     private final AtomicLong started = new AtomicLong(0);
 
     private final BiFunction<Runnable, String, Thread> newThread;
+    /**
+     * The constant part of the names of new worker threads, like {@code "package.Class$Worker[1:"}.
+     * Determined lazily on the first launch (a benign race at worst determines it twice).
+     */
+    private String prefix = null;
 
     Launcher(BiFunction<Runnable, String, Thread> newThread) {
         this.newThread = requireNonNull(newThread);
     }
 
+    /**
+     * Retrieves a function to create virtual threads.
+     *
+     * @throws UnsupportedOperationException when the runtime doesn't support virtual threads (prior to Java 21).
+     */
+    static BiFunction<Runnable, String, Thread> virtual() throws UnsupportedOperationException {
+        if (null == Virtual.FACTORY) {
+            throw new UnsupportedOperationException("virtual threads are not supported by this runtime");
+        } else {
+            return Virtual::newThread;
+        }
+    }
+
     private static Thread start(final Thread thread) {
         thread.start();
         return thread;
@@ -49,15 +67,53 @@ class Launcher {
         return format(TO_STRING_FORMAT, instance, started);
     }
 
+    /**
+     * The number of totally started threads (by this instance).
+     */
+    final long getStarted() {
+        return started.get();
+    }
+
     final Thread launch(final Runnable worker) {
-        return start(worker, instance, started.incrementAndGet());
+        return start(worker, started.incrementAndGet());
     }
 
-    private Thread start(final Runnable runnable, final long major, final long minor) {
-        return start(runnable, format(NAME_FORMAT, runnable.getClass().getName(), major, minor));
+    private Thread start(final Runnable runnable, final long minor) {
+        // Plain concatenation rather than String.format() - launching may happen frequently ...
+        return start(runnable, prefix(runnable) + minor + "]");
+    }
+
+    private String prefix(final Runnable runnable) {
+        if (null == prefix) {
+            prefix = runnable.getClass().getName() + "[" + instance + ":";
+        }
+        return prefix;
     }
 
     private Thread start(final Runnable runnable, final String name) {
         return start(newThread.apply(runnable, name));
     }
+
+    /**
+     * Lazily provides virtual threads by reflection, as long as this library is built for Java 8.
+     */
+    private static final class Virtual {
+
+        private static final ThreadFactory FACTORY = factory();
+
+        private static Thread newThread(final Runnable runnable, final String name) {
+            final Thread result = FACTORY.newThread(runnable);
+            result.setName(name);
+            return result;
+        }
+
+        private static ThreadFactory factory() {
+            try {
+                final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+            } catch (final ReflectiveOperationException ignored) {
+                return null;
+            }
+        }
+    }
 }
@@ -0,0 +1,66 @@
+package net.team33.async.consumer;
+
+import java.util.Arrays;
+
+/**
+ * A growable FIFO ring buffer of {@code long} values, without boxing: a queued value takes eight bytes.
+ * <p/>
+ * Not thread-safe: the {@link LongScheduler} accesses it only while holding its lock.
+ */
+class LongRing {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] values = new long[INITIAL_CAPACITY];
+    private int mask = INITIAL_CAPACITY - 1;
+    private int head = 0;
+    private int size = 0;
+
+    final int size() {
+        return size;
+    }
+
+    final boolean isEmpty() {
+        return 0 == size;
+    }
+
+    final void add(final long value) {
+        if (size == values.length) {
+            grow();
+        }
+        values[(head + size) & mask] = value;
+        size += 1;
+    }
+
+    /**
+     * Moves up to {@code buffer.length} values, the first ones, to the given buffer.
+     *
+     * @return The number of values moved.
+     */
+    final int poll(final long[] buffer) {
+        final int count = Math.min(size, buffer.length);
+        final int first = Math.min(count, values.length - head);
+        System.arraycopy(values, head, buffer, 0, first);
+        System.arraycopy(values, 0, buffer, first, count - first);
+        head = (head + count) & mask;
+        size -= count;
+        return count;
+    }
+
+    /**
+     * Removes all values and retrieves them in their original order.
+     */
+    final long[] clear() {
+        final long[] result = new long[size];
+        poll(result);
+        head = 0;
+        return result;
+    }
+
+    private void grow() {
+        final long[] grown = Arrays.copyOf(clear(), values.length << 1);
+        size = values.length;
+        values = grown;
+        mask = grown.length - 1;
+    }
+}
@@ -0,0 +1,88 @@
+package net.team33.async.consumer;
+
+/**
+ * Abstracts a policy how a {@link Scheduler} with a limited {@linkplain Scheduler.Builder#setCapacity(int, Overflow)
+ * capacity} treats a message passed while its queue is full.
+ */
+public class Overflow {
+
+    private static final String TO_STRING_FORMAT = "Overflow(%s, timeout(%d))";
+    private static final Overflow REJECT = new Overflow(Mode.REJECT, 0);
+    private static final Overflow DROP_OLDEST = new Overflow(Mode.DROP_OLDEST, 0);
+    private static final Overflow CALLER_RUNS = new Overflow(Mode.CALLER_RUNS, 0);
+
+    final Mode mode;
+    final long timeout;
+
+    private Overflow(final Mode mode, final long timeout) {
+        this.mode = mode;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Retrieves a policy that blocks the passing thread until the queue has room for the message or the
+     * given timeout elapses. In the latter case the message is {@linkplain #reject() rejected}.
+     *
+     * @param millis The timeout in milliseconds, greater or equal to {@code 0}.
+     * @return Not {@code null}.
+     * @throws IllegalArgumentException when {@code millis} is negative.
+     */
+    public static Overflow block(final long millis) throws IllegalArgumentException {
+        if (0 > millis) {
+            throw new IllegalArgumentException("0 > millis (" + millis + ")");
+        } else {
+            return new Overflow(Mode.BLOCK, millis);
+        }
+    }
+
+    /**
+     * Retrieves a policy that rejects the message: the passing thread gets an {@link OverflowException}.
+     *
+     * @return Not {@code null}.
+     */
+    public static Overflow reject() {
+        return REJECT;
+    }
+
+    /**
+     * Retrieves a policy that drops the oldest queued message in favour of the new one.
+     *
+     * @return Not {@code null}.
+     */
+    public static Overflow dropOldest() {
+        return DROP_OLDEST;
+    }
+
+    /**
+     * Retrieves a policy that lets the passing thread process the message itself, immediately.
+     * This naturally slows down the passing thread.
+     *
+     * @return Not {@code null}.
+     */
+    public static Overflow callerRuns() {
+        return CALLER_RUNS;
+    }
+
+    @Override
+    public final boolean equals(final Object other) {
+        return (this == other) || ((other instanceof Overflow) && equals((Overflow) other));
+    }
+
+    private boolean equals(final Overflow other) {
+        return (mode == other.mode) && (timeout == other.timeout);
+    }
+
+    @Override
+    public final int hashCode() {
+        return (31 * mode.hashCode()) + Long.hashCode(timeout);
+    }
+
+    @Override
+    public final String toString() {
+        return String.format(TO_STRING_FORMAT, mode, timeout);
+    }
+
+    enum Mode {
+        BLOCK, REJECT, DROP_OLDEST, CALLER_RUNS
+    }
+}
@@ -0,0 +1,15 @@
+package net.team33.async.consumer;
+
+/**
+ * Signals that a message was rejected because the queue of a {@link Scheduler} was full.
+ *
+ * @see Overflow
+ */
+public class OverflowException extends IllegalStateException {
+
+    private static final long serialVersionUID = 1L;
+
+    OverflowException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,322 @@
+package net.team33.async.consumer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static java.lang.String.format;
+import static java.lang.System.currentTimeMillis;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Generic {@link java.util.function.Consumer Consumer} implementation for the asynchronous processing of
+ * messages in a chain of stages, each with worker threads of its own.
+ * <p/>
+ * Each stage transforms a message by a function and passes the result to the next stage (a result {@code null} is
+ * dropped); the last stage passes its results to a sink. Each stage is a {@link Scheduler} with its own
+ * {@link Strategy}. When the next stage has spare capacity (no messages queued and its strategy would start a new
+ * worker thread anyway), a worker thread passes a result directly to the next stage's function rather than queueing
+ * it for another worker thread.
+ * <p/>
+ * With a {@linkplain Builder#setCapacity(int) capacity}, a full stage blocks the worker threads of the stage
+ * before, so backpressure propagates stage by stage up to the threads passing messages to the pipeline.
+ *
+ * @param <IN> The type of messages to be consumed.
+ * @author AKK - Andreas Kluge-Kaindl, Bremen (de)
+ * @since team33-async-8.0.1
+ */
+@SuppressWarnings("UnusedDeclaration")
+public class Pipeline<IN> implements Consumer<IN> {
+
+    private static final String TO_STRING_FORMAT = "%s(%s)";
+
+    private final List<Scheduler<Object>> stages;
+
+    private Pipeline(final List<Scheduler<Object>> stages) {
+        this.stages = Collections.unmodifiableList(stages);
+    }
+
+    /**
+     * Retrieves a builder for a pipeline starting with a stage that transforms the messages by the given function.
+     *
+     * @param strategy The strategy to launch worker threads for the first stage.
+     * @param function The function of the first stage.
+     */
+    public static <IN, OUT> Builder<IN, OUT> builder(final Strategy strategy,
+                                                     final Function<? super IN, ? extends OUT> function) {
+        return new Builder<IN, IN>(new ArrayList<>(0)).then(strategy, function);
+    }
+
+    private static void throwProblems(final Iterator<Throwable> iterator) throws Throwable {
+        if (iterator.hasNext()) {
+            final Throwable head = iterator.next();
+            while (iterator.hasNext()) {
+                head.addSuppressed(iterator.next());
+            }
+            throw head;
+        }
+    }
+
+    /**
+     * Retrieves a list of the problems that may have been occurred in any stage, stage by stage.
+     *
+     * @see Scheduler#getProblems()
+     */
+    public final List<Throwable> getProblems() {
+        final List<Throwable> result = new ArrayList<>(0);
+        for (final Scheduler<Object> stage : stages) {
+            result.addAll(stage.getProblems());
+        }
+        return result;
+    }
+
+    /**
+     * Throws an accumulated exception, if there are problems.
+     *
+     * @throws Throwable if there is at least one problem.
+     */
+    public final void throwProblems() throws Throwable {
+        throwProblems(getProblems().iterator());
+    }
+
+    @Override
+    public final String toString() {
+        return format(TO_STRING_FORMAT, getClass().getSimpleName(), stages);
+    }
+
+    /**
+     * The number of stages.
+     */
+    public final int getStages() {
+        return stages.size();
+    }
+
+    /**
+     * The number of messages passed to a stage and not yet finally processed by that stage.
+     *
+     * @param stage The index of the stage, starting with {@code 0}.
+     * @throws IndexOutOfBoundsException when there is no such stage.
+     * @see Scheduler#getLoad()
+     */
+    public final int getLoad(final int stage) throws IndexOutOfBoundsException {
+        return stages.get(stage).getLoad();
+    }
+
+    /**
+     * The number of currently running worker threads of a stage.
+     *
+     * @param stage The index of the stage, starting with {@code 0}.
+     * @throws IndexOutOfBoundsException when there is no such stage.
+     * @see Scheduler#getRunning()
+     */
+    public final int getRunning(final int stage) throws IndexOutOfBoundsException {
+        return stages.get(stage).getRunning();
+    }
+
+    /**
+     * The number of messages passed to a stage or handed directly to it and not yet finally processed, summed up over
+     * all stages, greater or equal to {@code 0}. A message in transition from one stage to the next may be counted
+     * twice.
+     */
+    public final int getLoad() {
+        int result = 0;
+        for (final Scheduler<Object> stage : stages) {
+            result += stage.getLoad();
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * <b>This implementation</b> passes the message to the first stage.
+     *
+     * @see Scheduler#accept(Object)
+     */
+    @Override
+    public final void accept(final IN message) throws NullPointerException, IllegalStateException {
+        stages.get(0).accept(message);
+    }
+
+    /**
+     * Blocks the calling thread until all passed messages are processed by all stages or a timeout occurs.
+     *
+     * @param millis The timeout time in milliseconds.
+     * @return {@code true} if all passed messages are processed.
+     * @see Scheduler#join(long)
+     */
+    public final boolean join(final long millis) throws IllegalArgumentException, InterruptedException {
+        if (0 > millis) {
+            throw new IllegalArgumentException("0 > millis (" + millis + ")");
+        }
+        // When a stage is drained, it won't pass further messages to the next stage ...
+        final long time0 = currentTimeMillis();
+        for (final Scheduler<Object> stage : stages) {
+            if (!stage.join(Math.max(0, millis - (currentTimeMillis() - time0)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @see Scheduler#start()
+     */
+    public final void start() {
+        for (final Scheduler<Object> stage : stages) {
+            stage.start();
+        }
+    }
+
+    /**
+     * Causes the pipeline to stop normal operation: no more messages may be passed, but the messages already passed
+     * are processed by all stages.
+     *
+     * @see Scheduler#stop()
+     */
+    public final void stop() {
+        // The following stages still have to accept the results of the preceding ones ...
+        stages.get(0).stop();
+    }
+
+    /**
+     * Causes all stages to stop normal operation as soon as possible. Results of ongoing processing can't be passed
+     * to the next stage anymore, which is recorded as a problem of the passing stage.
+     *
+     * @return The un-queued messages stage by stage, not {@code null}.
+     * @see Scheduler#stopASAP()
+     */
+    public final List<List<?>> stopASAP() {
+        final List<List<?>> result = new ArrayList<>(stages.size());
+        for (final Scheduler<Object> stage : stages) {
+            result.add(stage.stopASAP());
+        }
+        return result;
+    }
+
+    public final boolean isStopped() {
+        return stages.get(0).isStopped();
+    }
+
+    /**
+     * Builds a {@link Pipeline} stage by stage.
+     *
+     * @param <IN>  The type of messages passed to the pipeline.
+     * @param <OUT> The type of results of the last stage so far.
+     */
+    public static class Builder<IN, OUT> {
+
+        private final List<Stage> stages;
+        private int capacity = Integer.MAX_VALUE;
+        private long keepAlive = 0;
+        private BiFunction<Runnable, String, Thread> newThread = Thread::new;
+
+        private Builder(final List<Stage> stages) {
+            this.stages = stages;
+        }
+
+        /**
+         * Appends a stage that transforms the results of the preceding stage by the given function.
+         *
+         * @param strategy The strategy to launch worker threads for the stage.
+         * @param function The function of the stage. A result {@code null} is dropped.
+         * @throws NullPointerException when {@code strategy} or {@code function} is {@code null}.
+         */
+        @SuppressWarnings("unchecked")
+        public final <NEXT> Builder<IN, NEXT> then(final Strategy strategy,
+                                                   final Function<? super OUT, ? extends NEXT> function)
+                throws NullPointerException {
+            stages.add(new Stage(requireNonNull(strategy), (Function<Object, Object>) requireNonNull(function)));
+            return (Builder<IN, NEXT>) this;
+        }
+
+        /**
+         * Limits the number of messages queued per stage. A worker thread passing a result to a full stage is
+         * blocked until there is room, as well as a thread passing a message to the pipeline while the first stage is
+         * full.
+         * <p/>
+         * Default is {@link Integer#MAX_VALUE}: the queues are virtually unlimited.
+         *
+         * @throws IllegalArgumentException when {@code capacity} is less than {@code 1}.
+         * @see Scheduler.Builder#setCapacity(int, Overflow)
+         */
+        public final Builder<IN, OUT> setCapacity(final int capacity) throws IllegalArgumentException {
+            if (1 > capacity) {
+                throw new IllegalArgumentException("1 > capacity (" + capacity + ")");
+            } else {
+                this.capacity = capacity;
+                return this;
+            }
+        }
+
+        /**
+         * @see Scheduler.Builder#setKeepAlive(long)
+         */
+        public final Builder<IN, OUT> setKeepAlive(final long millis) throws IllegalArgumentException {
+            if (0 > millis) {
+                throw new IllegalArgumentException("0 > millis (" + millis + ")");
+            } else {
+                this.keepAlive = millis;
+                return this;
+            }
+        }
+
+        /**
+         * @see Scheduler.Builder#setNewThread(BiFunction)
+         */
+        public final Builder<IN, OUT> setNewThread(final BiFunction<Runnable, String, Thread> newThread)
+                throws NullPointerException {
+            this.newThread = requireNonNull(newThread);
+            return this;
+        }
+
+        /**
+         * Builds a new pipeline that passes the results of the last stage to the given sink.
+         * The sink is called by the worker threads of the last stage.
+         *
+         * @throws NullPointerException when {@code sink} is {@code null}.
+         */
+        @SuppressWarnings("unchecked")
+        public Pipeline<IN> build(final Consumer<? super OUT> sink) throws NullPointerException {
+            final List<Scheduler<Object>> result = new ArrayList<>(stages.size());
+            Consumer<Object> next = (Consumer<Object>) requireNonNull(sink);
+            for (int index = stages.size() - 1; 0 <= index; --index) {
+                final Stage stage = stages.get(index);
+                final Consumer<Object> downstream = next;
+                final Consumer<Object> target = message -> {
+                    final Object output = stage.function.apply(message);
+                    if (null != output) {
+                        downstream.accept(output);
+                    }
+                };
+                final Scheduler<Object> scheduler = Scheduler.builder(stage.strategy, target)
+                                                             .setCapacity(capacity, Overflow.block(Long.MAX_VALUE))
+                                                             .setKeepAlive(keepAlive)
+                                                             .setNewThread(newThread)
+                                                             .build();
+                result.add(0, scheduler);
+                next = message -> {
+                    if (!scheduler.handOff(message)) {
+                        scheduler.accept(message);
+                    }
+                };
+            }
+            return new Pipeline<>(result);
+        }
+    }
+
+    private static final class Stage {
+
+        private final Strategy strategy;
+        private final Function<Object, Object> function;
+
+        private Stage(final Strategy strategy, final Function<Object, Object> function) {
+            this.strategy = strategy;
+            this.function = function;
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package net.team33.async.consumer;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+
+import static java.lang.String.format;
+import static java.lang.System.currentTimeMillis;
+import static java.lang.System.nanoTime;
+
+/**
+ * Common base of the schedulers of primitive messages ({@link IntScheduler}, {@link LongScheduler}): launches
+ * worker threads by a {@link Strategy} and a {@link Launcher} just like a {@link Scheduler}, but leaves the queue
+ * and the target to the subclasses, which store their messages in a primitive ring buffer.
+ * <p/>
+ * A worker thread moves up to a batch of messages at once from the queue to a primitive buffer of its own and
+ * passes them to the target one by one, so no message is boxed on its way.
+ *
+ * @param <BUF> The type of a worker thread's buffer, a primitive array.
+ */
+abstract class PrimitiveScheduler<BUF> {
+
+    private static final String TO_STRING_FORMAT = "%s(%s)";
+
+    final Lock lock = new ReentrantLock();
+    final Problems problems = new Problems();
+
+    /**
+     * Signalled when all worker threads have become idle or terminated and there is at least one joining thread.
+     */
+    private final Condition quiet = lock.newCondition();
+    /**
+     * Signalled when a message is queued while there are idle worker threads.
+     */
+    private final Condition wakeup = lock.newCondition();
+    private final Runnable worker = new Worker();
+    private final Strategy strategy;
+    private final Launcher launcher;
+    private final int batchSize;
+    private final long keepAlive;
+
+    /**
+     * The number of started worker threads not finished (from the scheduler's point of view). Guarded by the lock.
+     */
+    private int started = 0;
+    /**
+     * The number of started worker threads currently kept alive waiting for further messages. Guarded by the lock.
+     */
+    private int idle = 0;
+    /**
+     * The number of messages moved to the buffers of worker threads but not yet finally processed.
+     * Guarded by the lock.
+     */
+    private int processing = 0;
+    /**
+     * The number of threads currently {@linkplain #join(long) joining}. Guarded by the lock.
+     */
+    private int joining = 0;
+    /**
+     * Indicates if the instance is ready to receive messages. Guarded by the lock.
+     */
+    private boolean ready = true;
+
+    PrimitiveScheduler(final Strategy strategy, final int batchSize, final long keepAlive,
+                       final BiFunction<Runnable, String, Thread> newThread) {
+        this.strategy = strategy;
+        this.batchSize = batchSize;
+        this.keepAlive = keepAlive;
+        this.launcher = new Launcher(newThread);
+    }
+
+    private static void throwProblems(final Iterator<Throwable> iterator) throws Throwable {
+        if (iterator.hasNext()) {
+            final Throwable head = iterator.next();
+            while (iterator.hasNext()) {
+                head.addSuppressed(iterator.next());
+            }
+            throw head;
+        }
+    }
+
+    /**
+     * The number of queued messages. Requires the lock to be held.
+     */
+    abstract int queued();
+
+    /**
+     * Retrieves a new buffer for a worker thread.
+     */
+    abstract BUF newBuffer(int batchSize);
+
+    /**
+     * Moves queued messages to the given buffer until it is full or the queue is empty. Requires the lock to be held.
+     *
+     * @return The number of messages moved.
+     */
+    abstract int drain(BUF buffer);
+
+    /**
+     * Passes the first {@code count} messages of the given buffer to the target and records any problems.
+     * Called by worker threads without holding the lock.
+     */
+    abstract void process(BUF buffer, int count);
+
+    /**
+     * @see Scheduler#getProblems()
+     */
+    public final List<Throwable> getProblems() {
+        return problems.list();
+    }
+
+    /**
+     * @see Scheduler#drainProblems()
+     */
+    public final List<Throwable> drainProblems() {
+        return problems.drain();
+    }
+
+    /**
+     * @see Scheduler#getDroppedProblems()
+     */
+    public final long getDroppedProblems() {
+        return problems.getDropped();
+    }
+
+    /**
+     * @see Scheduler#throwProblems()
+     */
+    public final void throwProblems() throws Throwable {
+        throwProblems(getProblems().iterator());
+    }
+
+    @Override
+    public final String toString() {
+        return format(TO_STRING_FORMAT, getClass().getSimpleName(), strategy);
+    }
+
+    /**
+     * @see Scheduler#getRunning()
+     */
+    public final int getRunning() {
+        lock.lock();
+        try {
+            return started;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @see Scheduler#getLoad()
+     */
+    public final int getLoad() {
+        lock.lock();
+        try {
+            return queued() + processing;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Throws an {@link IllegalStateException} if stopped. Requires the lock to be held.
+     */
+    final void requireReady() throws IllegalStateException {
+        if (!ready) {
+            throw new IllegalStateException("not ready");
+        }
+    }
+
+    /**
+     * Called after queueing some messages to hand them over to idle worker threads as far as possible and to start
+     * new worker threads as appropriate or necessary for the rest. Requires the lock to be held.
+     */
+    final void dispatch(final int added) {
+        for (int count = Math.min(added, idle); 0 < count; --count) {
+            wakeup.signal();
+        }
+        while ((queued() > idle) && strategy.test(queued() + processing, started)) {
+            started += 1;
+            launcher.launch(worker);
+        }
+    }
+
+    /**
+     * @see Scheduler#join(long)
+     */
+    public final boolean join(final long millis) throws IllegalArgumentException, InterruptedException {
+        if (0 > millis) {
+            throw new IllegalArgumentException("0 > millis (" + millis + ")");
+        }
+        lock.lock();
+        try {
+            joining += 1;
+            final long time0 = currentTimeMillis();
+            for (long delta = 0; (delta < millis) && !isQuiescent(); delta = currentTimeMillis() - time0) {
+                quiet.await(millis - delta, TimeUnit.MILLISECONDS);
+            }
+            return isQuiescent();
+        } finally {
+            joining -= 1;
+            lock.unlock();
+        }
+    }
+
+    private boolean isQuiescent() {
+        return (started == idle) && (0 == queued()) && (0 == processing);
+    }
+
+    /**
+     * Notifies joining threads if quiescent. Requires the lock to be held.
+     */
+    final void signalIfQuiescent() {
+        if ((0 < joining) && isQuiescent()) {
+            quiet.signalAll();
+        }
+    }
+
+    /**
+     * @see Scheduler#start()
+     */
+    public final void start() {
+        lock.lock();
+        try {
+            ready = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @see Scheduler#stop()
+     */
+    public final void stop() {
+        lock.lock();
+        try {
+            ready = false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public final boolean isStopped() {
+        lock.lock();
+        try {
+            return !ready;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Called by {@link Worker#run()} to finish the previous messages and to move the next ones to the given buffer,
+     * both within one single lock acquisition.
+     *
+     * @return The number of messages moved, {@code 0} if the calling worker thread is going to terminate.
+     */
+    private int poll(final BUF buffer, final int done) {
+        lock.lock();
+        try {
+            processing -= done;
+            if ((0 < done) && (0 < queued()) && strategy.isSurplus(queued() + processing, started)) {
+                // After a spike, fewer worker threads suffice for the rest.
+                // A worker thread just launched because of the load will process at least one batch anyway ...
+                started -= 1;
+                return 0;
+            }
+            int result = drain(buffer);
+            if ((0 == result) && (0 < keepAlive)) {
+                result = await(buffer);
+            }
+            if (0 == result) {
+                started -= 1;
+                signalIfQuiescent();
+            }
+            processing += result;
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Keeps the calling worker thread alive for a while waiting for further messages. Requires the lock to be held.
+     *
+     * @return The number of messages moved to the given buffer, {@code 0} if the keep-alive time elapsed.
+     */
+    private int await(final BUF buffer) {
+        idle += 1;
+        signalIfQuiescent();
+        try {
+            int result = 0;
+            final long time0 = currentTimeMillis();
+            for (long delta = 0; (0 == result) && (delta < keepAlive); delta = currentTimeMillis() - time0) {
+                wakeup.await(keepAlive - delta, TimeUnit.MILLISECONDS);
+                result = drain(buffer);
+            }
+            return result;
+        } catch (final InterruptedException ignored) {
+            // Let this thread terminate as if the keep-alive time had elapsed ...
+            return 0;
+        } finally {
+            idle -= 1;
+        }
+    }
+
+    private class Worker implements Runnable {
+        @Override
+        public final void run() {
+            final BUF buffer = newBuffer(batchSize);
+            for (int count = poll(buffer, 0); 0 < count; count = poll(buffer, count)) {
+                process(buffer, count);
+                strategy.feedback(count, nanoTime());
+            }
+        }
+    }
+}
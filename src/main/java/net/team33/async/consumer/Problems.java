@@ -0,0 +1,108 @@
+package net.team33.async.consumer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Retains the most recent problems occurred while processing messages, up to a fixed capacity.
+ * <p/>
+ * Each problem is first passed to an optional handler, then retained. When the capacity is exhausted, the oldest
+ * retained problem is dropped in favour of the new one and counted. So memory usage stays flat even when the target
+ * fails on every message.
+ * <p/>
+ * Thread-safe: problems are rare, so a (separate) lock is sufficient.
+ */
+class Problems {
+
+    static final int DEFAULT_CAPACITY = 1024;
+
+    private final Lock lock = new ReentrantLock();
+    private final Throwable[] ring;
+    private final Consumer<? super Throwable> handler;
+    private int head = 0;
+    private int size = 0;
+    private long dropped = 0;
+
+    Problems(final int capacity, final Consumer<? super Throwable> handler) {
+        this.ring = new Throwable[capacity];
+        this.handler = handler;
+    }
+
+    Problems() {
+        this(DEFAULT_CAPACITY, null);
+    }
+
+    final void add(final Throwable problem) {
+        if (null != handler) {
+            try {
+                handler.accept(problem);
+            } catch (final Throwable caught) {
+                problem.addSuppressed(caught);
+            }
+        }
+        lock.lock();
+        try {
+            if (0 == ring.length) {
+                dropped += 1;
+            } else if (size < ring.length) {
+                ring[(head + size) % ring.length] = problem;
+                size += 1;
+            } else {
+                ring[head] = problem;
+                head = (head + 1) % ring.length;
+                dropped += 1;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves the retained problems in order of occurrence.
+     */
+    final List<Throwable> list() {
+        lock.lock();
+        try {
+            final List<Throwable> result = new ArrayList<>(size);
+            for (int index = 0; index < size; ++index) {
+                result.add(ring[(head + index) % ring.length]);
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes and retrieves the retained problems in order of occurrence.
+     */
+    final List<Throwable> drain() {
+        lock.lock();
+        try {
+            final List<Throwable> result = list();
+            for (int index = 0; index < size; ++index) {
+                ring[(head + index) % ring.length] = null;
+            }
+            head = 0;
+            size = 0;
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The number of problems dropped so far because the capacity was exhausted.
+     */
+    final long getDropped() {
+        lock.lock();
+        try {
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package net.team33.async.consumer;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Records the statistics of message processing by one single thread at a time, so recording doesn't contend
+ * with other threads. Instances are provided by a {@link Pool} which sums them up on demand.
+ */
+class Recorder {
+
+    private final AtomicLongArray waits = new AtomicLongArray(Histogram.SIZE);
+    private final AtomicLongArray services = new AtomicLongArray(Histogram.SIZE);
+    private volatile long processed = 0;
+    private volatile long problems = 0;
+    /**
+     * The time stamps of the messages of the current batch, noted when drained from the queue.
+     * Grows as needed, so it's allocated once per recorder in the steady state.
+     */
+    private long[] stamps = new long[1];
+
+    private static void record(final AtomicLongArray counts, final long nanos) {
+        final int index = Histogram.index(nanos);
+        // Single writer: no need for an atomic increment ...
+        counts.lazySet(index, counts.get(index) + 1);
+    }
+
+    private static void addTo(final long[] sums, final AtomicLongArray counts) {
+        for (int index = 0; index < sums.length; ++index) {
+            sums[index] += counts.get(index);
+        }
+    }
+
+    /**
+     * Notes the time stamp of the message at the given index of the current batch.
+     */
+    final void noteStamp(final int index, final long stamp) {
+        if (index >= stamps.length) {
+            stamps = Arrays.copyOf(stamps, Math.max(index + 1, 2 * stamps.length));
+        }
+        stamps[index] = stamp;
+    }
+
+    /**
+     * Records the time the message at the given index of the current batch was queued
+     * until it is passed to the target at the given time.
+     */
+    final void recordWait(final int index, final long now) {
+        record(waits, now - stamps[index]);
+    }
+
+    /**
+     * Records the time the target spent to process a message (or a batch) and whether it failed.
+     */
+    final void recordService(final long nanos, final int messages, final boolean failed) {
+        record(services, nanos);
+        processed += messages;
+        if (failed) {
+            problems += 1;
+        }
+    }
+
+    /**
+     * Keeps the released recorders in a fixed number of slots, so acquiring and releasing a recorder doesn't allocate
+     * anything (a passing thread does so per message, see {@link Overflow#callerRuns()}). Only recorders in excess of
+     * the slots go to a queue.
+     */
+    static class Pool {
+
+        private static final int SLOTS = 16;
+
+        private final List<Recorder> all = new CopyOnWriteArrayList<>();
+        private final AtomicReferenceArray<Recorder> slots = new AtomicReferenceArray<>(SLOTS);
+        private final Queue<Recorder> excess = new ConcurrentLinkedQueue<>();
+
+        /**
+         * Retrieves a recorder for exclusive use by the calling thread until it is {@linkplain #release released}.
+         */
+        final Recorder acquire() {
+            for (int index = 0; index < SLOTS; ++index) {
+                if (null != slots.get(index)) {
+                    final Recorder result = slots.getAndSet(index, null);
+                    if (null != result) {
+                        return result;
+                    }
+                }
+            }
+            final Recorder result = excess.poll();
+            if (null == result) {
+                final Recorder created = new Recorder();
+                all.add(created);
+                return created;
+            } else {
+                return result;
+            }
+        }
+
+        final void release(final Recorder recorder) {
+            for (int index = 0; index < SLOTS; ++index) {
+                if ((null == slots.get(index)) && slots.compareAndSet(index, null, recorder)) {
+                    return;
+                }
+            }
+            excess.add(recorder);
+        }
+
+        final long getProcessed() {
+            long result = 0;
+            for (final Recorder recorder : all) {
+                result += recorder.processed;
+            }
+            return result;
+        }
+
+        final long getProblems() {
+            long result = 0;
+            for (final Recorder recorder : all) {
+                result += recorder.problems;
+            }
+            return result;
+        }
+
+        final Histogram getWaits() {
+            final long[] sums = new long[Histogram.SIZE];
+            for (final Recorder recorder : all) {
+                addTo(sums, recorder.waits);
+            }
+            return new Histogram(sums);
+        }
+
+        final Histogram getServices() {
+            final long[] sums = new long[Histogram.SIZE];
+            for (final Recorder recorder : all) {
+                addTo(sums, recorder.services);
+            }
+            return new Histogram(sums);
+        }
+    }
+}
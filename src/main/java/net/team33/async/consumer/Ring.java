@@ -0,0 +1,101 @@
+package net.team33.async.consumer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A growable FIFO ring buffer of elements, each one paired with a time stamp.
+ * <p/>
+ * Not thread-safe: the {@link Scheduler} accesses it only while holding its lock.
+ */
+class Ring<E> implements Backlog<E> {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private Object[] elements = new Object[INITIAL_CAPACITY];
+    private long[] stamps = new long[INITIAL_CAPACITY];
+    private int mask = INITIAL_CAPACITY - 1;
+    private int head = 0;
+    private int size = 0;
+    private long stamp = 0;
+
+    @Override
+    public final int size() {
+        return size;
+    }
+
+    @Override
+    public final boolean isEmpty() {
+        return 0 == size;
+    }
+
+    @Override
+    public final void add(final E element, final long stamp) throws NullPointerException {
+        if (null == element) {
+            throw new NullPointerException("element == null");
+        }
+        if (size == elements.length) {
+            grow();
+        }
+        final int index = (head + size) & mask;
+        elements[index] = element;
+        stamps[index] = stamp;
+        size += 1;
+    }
+
+    /**
+     * Removes and retrieves the first element or {@code null} if empty.
+     * The time stamp of a removed element is available by {@link #stamp()} until the next removal.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public final E poll() {
+        if (0 == size) {
+            return null;
+        } else {
+            final E result = (E) elements[head];
+            elements[head] = null;
+            stamp = stamps[head];
+            head = (head + 1) & mask;
+            size -= 1;
+            return result;
+        }
+    }
+
+    /**
+     * Removes the first (the oldest) element, if any.
+     */
+    @Override
+    public final E evict() {
+        return poll();
+    }
+
+    @Override
+    public final long stamp() {
+        return stamp;
+    }
+
+    @Override
+    public final List<E> clear() {
+        final List<E> result = new ArrayList<>(size);
+        for (E element = poll(); null != element; element = poll()) {
+            result.add(element);
+        }
+        head = 0;
+        return result;
+    }
+
+    private void grow() {
+        final int capacity = elements.length << 1;
+        final Object[] newElements = new Object[capacity];
+        final long[] newStamps = new long[capacity];
+        for (int index = 0; index < size; ++index) {
+            newElements[index] = elements[(head + index) & mask];
+            newStamps[index] = stamps[(head + index) & mask];
+        }
+        elements = newElements;
+        stamps = newStamps;
+        mask = capacity - 1;
+        head = 0;
+    }
+}
@@ -1,16 +1,33 @@
 package net.team33.async.consumer;
 
+import java.io.File;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
 
 import static java.lang.String.format;
 import static java.lang.System.currentTimeMillis;
+import static java.lang.System.nanoTime;
 import static java.util.Objects.requireNonNull;
-import static net.team33.async.consumer.Payload.payload;
 
 /**
  * Generic {@link java.util.function.Consumer Consumer} implementation for the asynchronous processing of
  * messages in separate worker threads.
+ * <p/>
+ * The internal state is guarded by a {@link Lock} rather than by the object monitor,
+ * so waiting threads don't pin their carrier threads when running as virtual threads
+ * (see {@link Builder#setVirtualThreads()}).
  *
  * @param <MSG> The type of messages to be consumed.
  * @author AKK - Andreas Kluge-Kaindl, Bremen (de)
@@ -21,22 +38,109 @@ public class Scheduler<MSG> implements Consumer<MSG> {
 
     private static final String TO_STRING_FORMAT = "%s(%s)";
 
-    private final Collection<Throwable> problems = new LinkedList<>();
-    private final Launcher launcher = new Launcher(Thread::new);
     private final Runnable worker = new Worker();
-    private final Queue<MSG> queue = new ArrayDeque<>(0);
+    private final Recorder.Pool recorders = new Recorder.Pool();
+    private final LongAdder accepted = new LongAdder();
     private final Variable variable = new Variable();
+    private final Lock lock = new ReentrantLock();
+    /**
+     * Signalled when all worker threads have become idle or terminated and there is at least one joining thread.
+     */
+    private final Condition quiet = lock.newCondition();
+    /**
+     * Registered listeners to be notified each time the scheduler becomes quiescent.
+     */
+    private final List<Runnable> idleListeners = new CopyOnWriteArrayList<>();
+    /**
+     * Signalled when a message is handed over to an idle worker thread.
+     */
+    private final Condition wakeup = lock.newCondition();
+    /**
+     * Signalled when a full queue gets room for a message.
+     */
+    private final Condition space = lock.newCondition();
 
+    private final Backlog<MSG> queue;
+    /**
+     * The queue if {@linkplain Builder#setCoalescing(Function) coalescing}, {@code null} otherwise.
+     */
+    private final Coalescing<MSG> coalescing;
+    /**
+     * Provides the segments if {@linkplain Builder#setSpill(int, File, Codec) spilling}, {@code null} otherwise.
+     */
+    private final Spill.Reserve reserve;
+    private final Problems problems;
+    /**
+     * Problems occurred while holding the lock, like spilled messages that can't be read back. They are passed to the
+     * problems (and so to an {@linkplain Builder#setOnProblem(Consumer) onProblem} handler) only after releasing the
+     * lock, see {@link #unlock()}. Guarded by the lock.
+     */
+    private final List<Throwable> deferred = new ArrayList<>(0);
     private final Strategy strategy;
     private final Consumer<? super MSG> target;
+    private final Consumer<? super List<MSG>> batchTarget;
+    private final int batchSize;
+    private final long linger;
+    private final long keepAlive;
+    private final int capacity;
+    private final Overflow overflow;
+    private final Launcher launcher;
+    /**
+     * Limits the rate of target invocations, {@code null} if unlimited.
+     */
+    private final TokenBucket rateLimit;
+    /**
+     * Determines the time to live of a message in milliseconds, {@code null} if unlimited.
+     */
+    private final ToLongFunction<? super MSG> timeToLive;
+    private final Consumer<? super MSG> onExpiry;
+    /**
+     * The maximum number of started worker threads so far. Written while holding the lock only.
+     */
+    private volatile int peakRunning = 0;
+    /**
+     * Futures to be completed when the scheduler becomes quiescent. Guarded by the lock.
+     */
+    private List<CompletableFuture<Void>> drained = new ArrayList<>(0);
 
     private Scheduler(final Builder<MSG> origin) {
         this.strategy = origin.strategy;
         this.target = origin.target;
+        this.batchTarget = origin.batchTarget;
+        this.batchSize = origin.batchSize;
+        this.linger = origin.linger;
+        this.keepAlive = origin.keepAlive;
+        this.capacity = origin.capacity;
+        this.overflow = origin.overflow;
+        this.launcher = new Launcher(origin.newThread);
+        this.problems = new Problems(origin.problemCapacity, origin.onProblem);
+        this.rateLimit = (0 == origin.burst) ? null : new TokenBucket(origin.rate, origin.burst);
+        this.timeToLive = origin.timeToLive;
+        this.onExpiry = origin.onExpiry;
+        this.reserve = (null == origin.codec) ? null : new Spill.Reserve(origin.spillDirectory);
+        final Supplier<Backlog<MSG>> newFifo = (null == origin.codec)
+                ? Ring::new
+                : () -> new Spill<>(origin.heapLimit, reserve, origin.codec, deferred::add);
+        final Backlog<MSG> backlog = (null == origin.priority)
+                ? newFifo.get()
+                : new Lanes<>(origin.priority, origin.weights, newFifo);
+        this.coalescing = (null == origin.keyOf) ? null : new Coalescing<>(origin.keyOf, backlog);
+        this.queue = (null == coalescing) ? backlog : coalescing;
     }
 
     public static <MSG> Builder<MSG> builder(final Strategy strategy, final Consumer<MSG> target) {
-        return new Builder<>(strategy, target);
+        return new Builder<>(strategy, requireNonNull(target), null);
+    }
+
+    /**
+     * Retrieves a builder for a scheduler that passes the messages in batches to its target.
+     * The size of a batch is limited by {@link Builder#setBatchSize(int)}.
+     * <p/>
+     * A problem caused by the target while processing a batch is recorded as a {@link BatchException}
+     * which holds the failed batch.
+     */
+    public static <MSG> Builder<MSG> batchBuilder(final Strategy strategy, final Consumer<List<MSG>> target) {
+        return new Builder<>(strategy, null, requireNonNull(target));
     }
 
     private static void throwProblems(final Iterator<Throwable> iterator) throws Throwable {
@@ -50,12 +154,30 @@ public class Scheduler<MSG> implements Consumer<MSG> {
     }
 
     /**
-     * Retrieves a list of all problems that may have been occurred during asynchronous processing of incoming messages.
+     * Retrieves a list of the problems that may have been occurred during asynchronous processing of incoming
+     * messages, in order of occurrence.
+     * <p/>
+     * Only the most recent problems are retained (see {@link Builder#setProblemCapacity(int)}), older ones are dropped
+     * (see {@link #getDroppedProblems()}).
      */
     public final List<Throwable> getProblems() {
-        synchronized (problems) {
-            return new ArrayList<>(problems);
-        }
+        return problems.list();
+    }
+
+    /**
+     * Removes and retrieves the retained problems in order of occurrence.
+     *
+     * @see #getProblems()
+     */
+    public final List<Throwable> drainProblems() {
+        return problems.drain();
+    }
+
+    /**
+     * The number of problems dropped so far because too many problems have been occurred to retain them all.
+     */
+    public final long getDroppedProblems() {
+        return problems.getDropped();
     }
 
     /**
@@ -64,9 +186,7 @@ public class Scheduler<MSG> implements Consumer<MSG> {
      * @throws Throwable if there is at least one problem.
      */
     public final void throwProblems() throws Throwable {
-        synchronized (problems) {
-            throwProblems(problems.iterator());
-        }
+        throwProblems(getProblems().iterator());
     }
 
     @Override
@@ -77,20 +197,31 @@ public class Scheduler<MSG> implements Consumer<MSG> {
     /**
      * The number of currently running worker threads (from scheduler´s point of view), greater or equal to {@code 0}.
      * <p>
-     * Includes currently rising threads not yet really working (but going to).
+     * Includes currently rising threads not yet really working (but going to)
+     * and idle threads kept alive waiting for further messages (see {@link Builder#setKeepAlive(long)}).
      * <p>
      * Excludes those threads in deed still running but definitely finished processing messages
      * and so definitely are going to terminate.
      */
-    public final synchronized int getRunning() {
-        return variable.started;
+    public final int getRunning() {
+        lock.lock();
+        try {
+            return variable.started;
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
      * The number of messages passed and not yet finally processed, greater or equal to {@code 0}.
      */
-    public final synchronized int getLoad() {
-        return queue.size() + variable.working;
+    public final int getLoad() {
+        lock.lock();
+        try {
+            return queue.size() + variable.processing;
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -100,15 +231,109 @@ public class Scheduler<MSG> implements Consumer<MSG> {
      * just rising new worker threads. So the real queue size may be greater
      * than this value (at most by {@link #getRunning()}).
      */
-    public final synchronized int getOverhead() {
-        return queue.size() + variable.working - variable.started;
+    public final int getOverhead() {
+        lock.lock();
+        try {
+            return Math.max(0, queue.size() + variable.working - variable.started);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves a snapshot of the statistics of this scheduler.
+     * <p/>
+     * The statistics are recorded by each worker thread separately and summed up on demand,
+     * so neither recording nor retrieving them contends for the lock of this scheduler.
+     */
+    public final Statistics getStatistics() {
+        return new Statistics(accepted.sum(), recorders, launcher.getStarted(), peakRunning);
+    }
+
+    /**
+     * The number of messages rejected so far because the queue was full
+     * (see {@link Overflow#reject()} and {@link Overflow#block(long)}).
+     */
+    public final long getRejected() {
+        lock.lock();
+        try {
+            return variable.rejected;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The number of queued messages dropped so far in favour of newer ones because the queue was full
+     * (see {@link Overflow#dropOldest()}).
+     */
+    public final long getDropped() {
+        lock.lock();
+        try {
+            return variable.dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The number of messages processed so far by the passing threads themselves because the queue was full
+     * (see {@link Overflow#callerRuns()}).
+     */
+    public final long getCallerRuns() {
+        lock.lock();
+        try {
+            return variable.callerRuns;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The number of messages discarded so far unprocessed because their time to live elapsed while queued
+     * (see {@link Builder#setTimeToLive(long)}).
+     */
+    public final long getExpired() {
+        lock.lock();
+        try {
+            return variable.expired;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The number of worker threads retired so far as surplus while messages were still queued
+     * (see {@link Strategy}).
+     */
+    public final long getRetired() {
+        lock.lock();
+        try {
+            return variable.retired;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The number of messages replaced so far by newer ones with the same key before being processed
+     * (see {@link Builder#setCoalescing(Function)}).
+     */
+    public final long getCoalesced() {
+        lock.lock();
+        try {
+            return (null == coalescing) ? 0 : coalescing.getCoalesced();
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
      * {@inheritDoc}
      * <p/>
      * <b>This implementation</b> atomically queues the message for asynchronous processing
-     * and starts a new worker thread if appropriate or necessary.
+     * and hands it over to an idle worker thread kept alive or else starts a new worker thread
+     * if appropriate or necessary.
      *
      * @param message The message, not {@code null}.
      *
@@ -116,72 +341,658 @@ public class Scheduler<MSG> implements Consumer<MSG> {
      * @throws IllegalStateException if {@linkplain #stop() stopped} and not
      *                               yet {@linkplain #start() restarted}
      *                               (basically unspecific for Consumers).
+     * @throws OverflowException     if the queue is full and the message is rejected
+     *                               according to the {@link Overflow} policy.
      */
     @Override
-    public final synchronized void accept(final MSG message) throws NullPointerException, IllegalStateException {
-        if (variable.ready) {
-            this.queue.add(message);
-            if (strategy.test(payload(queue.size() + variable.working, variable.started))) {
-                variable.started += 1;
-                launcher.launch(worker);
+    public final void accept(final MSG message) throws NullPointerException, IllegalStateException {
+        requireNonNull(message);
+        prepareSpill();
+        lock.lock();
+        try {
+            if (variable.ready) {
+                final long stamp = nanoTime();
+                // A coalesced message neither needs room in the queue nor a worker thread of its own ...
+                final boolean admitted = !isCoalesced(message, stamp) && admit(message);
+                accepted.increment();
+                if (admitted) {
+                    this.queue.add(message, stamp);
+                    if (0 < (variable.lingering + variable.idle)) {
+                        // A lingering or idle worker thread will take over ...
+                        wakeup.signal();
+                    }
+                    // ... and a new worker thread will be started as appropriate or necessary for the rest ...
+                    if ((queue.size() > variable.idle) && isLaunchable(0)) {
+                        launch();
+                    }
+                }
+            } else {
+                throw new IllegalStateException("not ready");
             }
-        } else {
+        } finally {
+            unlock();
+        }
+    }
+
+    /**
+     * Atomically queues some messages for asynchronous processing, hands them over to idle worker threads
+     * kept alive as far as possible and starts as many new worker threads as appropriate or necessary at once.
+     * <p/>
+     * Has the same effect as passing the messages one by one to {@link #accept(Object)}, but acquires the lock
+     * only once and consults the {@link Strategy} only once per worker thread to be started
+     * (rather than once per message).
+     *
+     * @param messages The messages, not {@code null}, not containing {@code null}.
+     *
+     * @throws NullPointerException  if {@code messages} is or contains {@code null}
+     *                               (messages preceding a {@code null} element remain queued).
+     * @throws IllegalStateException if {@linkplain #stop() stopped} and not
+     *                               yet {@linkplain #start() restarted}.
+     * @throws OverflowException     if the queue is full and a message is rejected
+     *                               according to the {@link Overflow} policy
+     *                               (preceding messages remain queued).
+     */
+    public final void acceptAll(final Iterable<? extends MSG> messages)
+            throws NullPointerException, IllegalStateException {
+        prepareSpill();
+        lock.lock();
+        try {
+            if (variable.ready) {
+                final long stamp = nanoTime();
+                int added = 0;
+                try {
+                    for (final MSG message : messages) {
+                        requireNonNull(message);
+                        if (isCoalesced(message, stamp)) {
+                            accepted.increment();
+                            continue;
+                        }
+                        if (queue.size() >= capacity) {
+                            // Let the worker threads make room ...
+                            dispatch(added);
+                            added = 0;
+                        }
+                        final boolean admitted = admit(message);
+                        accepted.increment();
+                        if (admitted) {
+                            this.queue.add(message, stamp);
+                            added += 1;
+                        }
+                    }
+                } finally {
+                    dispatch(added);
+                }
+            } else {
+                throw new IllegalStateException("not ready");
+            }
+        } finally {
+            unlock();
+        }
+    }
+
+    /**
+     * Processes a message by the calling thread, directly, if this scheduler has spare capacity, i.e. if no other
+     * messages are queued and the {@link Strategy} would start a new worker thread for it anyway.
+     * Used by a {@link Pipeline} to save the queueing and the thread hand-off between two stages.
+     *
+     * @return {@code true} if the message was processed, {@code false} if it still has to be
+     * {@linkplain #accept(Object) passed}.
+     */
+    final boolean handOff(final MSG message) {
+        requireNonNull(message);
+        lock.lock();
+        try {
+            if (variable.ready && queue.isEmpty()
+                    && strategy.test(variable.processing + 1, variable.started + variable.handingOff)) {
+                accepted.increment();
+                variable.handingOff += 1;
+                try {
+                    runInline(message);
+                } finally {
+                    variable.handingOff -= 1;
+                }
+                return true;
+            } else {
+                return false;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Atomically queues some messages for asynchronous processing.
+     *
+     * @see #acceptAll(Iterable)
+     */
+    public final void acceptAll(final MSG[] messages) throws NullPointerException, IllegalStateException {
+        acceptAll(Arrays.asList(messages));
+    }
+
+    /**
+     * Called by {@link #accept(Object)} and {@link #acceptAll(Iterable)} before acquiring the lock to create a
+     * segment file for {@linkplain Builder#setSpill(int, File, Codec) spilling} in advance, if needed soon.
+     */
+    private void prepareSpill() {
+        if (null != reserve) {
+            reserve.prepare();
+        }
+    }
+
+    /**
+     * Called by {@link #accept(Object)} and {@link #acceptAll(Iterable)} to replace a queued message with the same key
+     * by the given one, if {@linkplain Builder#setCoalescing(Function) coalescing}. Requires the lock to be held.
+     */
+    private boolean isCoalesced(final MSG message, final long stamp) {
+        return (null != coalescing) && coalescing.coalesce(message, stamp);
+    }
+
+    /**
+     * Called by {@link #accept(Object)} and {@link #acceptAll(Iterable)} before queueing a message
+     * to apply the {@link Overflow} policy if the queue is full. Requires the lock to be held.
+     *
+     * @return {@code true} if the message is to be queued,
+     * {@code false} if it was already processed by the calling thread.
+     * @throws IllegalStateException if stopped while waiting for room in the queue.
+     * @throws OverflowException     if the message is rejected.
+     */
+    private boolean admit(final MSG message) throws IllegalStateException {
+        if (queue.size() < capacity) {
+            return true;
+        }
+        switch (overflow.mode) {
+        case BLOCK:
+            awaitSpace();
+            return true;
+        case DROP_OLDEST:
+            queue.evict();
+            variable.dropped += 1;
+            return true;
+        case CALLER_RUNS:
+            variable.callerRuns += 1;
+            runInline(message);
+            return false;
+        default:
+            variable.rejected += 1;
+            throw new OverflowException("queue is full: capacity(" + capacity + ")");
+        }
+    }
+
+    /**
+     * Called by {@link #admit(Object)} to block the calling thread until the queue has room for a message.
+     * Requires the lock to be held.
+     */
+    private void awaitSpace() throws IllegalStateException {
+        variable.blocked += 1;
+        try {
+            final long time0 = currentTimeMillis();
+            for (long delta = 0;
+                 variable.ready && (queue.size() >= capacity) && (delta < overflow.timeout);
+                 delta = currentTimeMillis() - time0) {
+                space.await(overflow.timeout - delta, TimeUnit.MILLISECONDS);
+            }
+        } catch (final InterruptedException caught) {
+            // Treat the message as if the timeout had elapsed ...
+            Thread.currentThread().interrupt();
+        } finally {
+            variable.blocked -= 1;
+        }
+
+        if (!variable.ready) {
             throw new IllegalStateException("not ready");
+        } else if (queue.size() >= capacity) {
+            variable.rejected += 1;
+            throw new OverflowException("queue is full: capacity(" + capacity + "), timeout(" + overflow.timeout + ")");
         }
     }
 
+    /**
+     * Called by {@link #admit(Object)} and {@link #handOff(Object)} to process a message by the calling thread.
+     * Requires the lock to be held but temporarily releases it.
+     */
+    private void runInline(final MSG message) {
+        variable.processing += 1;
+        lock.unlock();
+        final Recorder recorder = recorders.acquire();
+        try {
+            if (null == batchTarget) {
+                strategy.feedback(1, process(message, recorder, nanoTime()));
+            } else {
+                process(Collections.singletonList(message), false, recorder);
+            }
+        } finally {
+            recorders.release(recorder);
+            lock.lock();
+            variable.processing -= 1;
+            if (isQuiescent()) {
+                quiesced();
+            }
+        }
+    }
+
+    /**
+     * Releases the lock, then passes the problems {@linkplain #deferred deferred} while holding it to the problems.
+     * Used where the queue may be polled, so a spilled message that can't be read back doesn't make an onProblem
+     * handler run under the lock.
+     */
+    private void unlock() {
+        if (deferred.isEmpty()) {
+            lock.unlock();
+        } else {
+            final List<Throwable> reported = new ArrayList<>(deferred);
+            deferred.clear();
+            lock.unlock();
+            reported.forEach(problems::add);
+        }
+    }
+
+    /**
+     * Called by {@link #acceptAll(Iterable)} after queueing some messages. Requires the lock to be held.
+     */
+    private void dispatch(final int added) {
+        // Lingering or idle worker threads will take over as far as possible ...
+        for (int count = Math.min(added, variable.lingering + variable.idle); 0 < count; --count) {
+            wakeup.signal();
+        }
+        // ... and new worker threads will be started as appropriate or necessary for the rest ...
+        while ((queue.size() > variable.idle) && isLaunchable(0)) {
+            launch();
+        }
+    }
+
+    /**
+     * Consults the {@link Strategy} whether to start a new worker thread. Requires the lock to be held.
+     * <p/>
+     * With a {@linkplain Builder#setRateLimit(double, int) rate limit}, a new worker thread is only started if a token
+     * is left for it (beyond those for the worker threads just rising), it would just wait for a token otherwise.
+     * The first worker thread is started anyway. As the tokens refill, the worker threads re-evaluate this
+     * each time they poll, so a backlog doesn't remain with too few threads when no further messages are passed.
+     *
+     * @param claimed The number of tokens going to be taken anyway by the working threads, if known to the caller:
+     *                all of them when polled by a worker thread, {@code 0} otherwise.
+     */
+    private boolean isLaunchable(final int claimed) {
+        return strategy.test(queue.size() + variable.processing, variable.started)
+                && ((null == rateLimit) || (0 == variable.started)
+                || ((variable.started - variable.working + claimed) < rateLimit.available(nanoTime())));
+    }
+
+    /**
+     * Starts a new worker thread. Requires the lock to be held.
+     */
+    private void launch() {
+        variable.started += 1;
+        if (peakRunning < variable.started) {
+            peakRunning = variable.started;
+        }
+        launcher.launch(worker);
+    }
+
     /**
      * Blocks the calling thread until all queued messages are processed (so
-     * that all worker threads should be terminated) or a timeout occurs.
+     * that all worker threads should be terminated or at least idle) or a timeout occurs.
      *
      * @param millis The timeout time in milliseconds.
      * @return {@code true} if all queued messages are processed.
      * @throws IllegalArgumentException
      * @throws InterruptedException
      */
-    public final synchronized boolean join(final long millis) throws IllegalArgumentException, InterruptedException {
+    public final boolean join(final long millis) throws IllegalArgumentException, InterruptedException {
         if (0 > millis) {
             throw new IllegalArgumentException("0 > millis (" + millis + ")");
+        }
 
-        } else if (0 < millis) {
+        lock.lock();
+        try {
+            variable.joining += 1;
             final long time0 = currentTimeMillis();
-            for (long delta = 0; (delta < millis) && (0 < variable.started); delta = currentTimeMillis() - time0) {
-                this.wait(millis - delta);
+            for (long delta = 0; (delta < millis) && !isQuiescent(); delta = currentTimeMillis() - time0) {
+                quiet.await(millis - delta, TimeUnit.MILLISECONDS);
+            }
+            return isQuiescent();
+        } finally {
+            variable.joining -= 1;
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves a future that completes as soon as all queued messages are processed (so that all worker threads
+     * are terminated or idle), like {@link #join(long)} but without blocking a thread while waiting.
+     * <p/>
+     * The future is already completed if the scheduler is quiescent. Otherwise it will be completed by the
+     * (worker) thread that causes quiescence, so dependent actions should be short or asynchronous.
+     *
+     * @return Not {@code null}.
+     */
+    public final CompletableFuture<Void> whenDrained() {
+        lock.lock();
+        try {
+            if (isQuiescent()) {
+                return CompletableFuture.completedFuture(null);
+            } else {
+                final CompletableFuture<Void> result = new CompletableFuture<>();
+                drained.add(result);
+                return result;
             }
+        } finally {
+            lock.unlock();
         }
-        return (0 == variable.started);
     }
 
     /**
-     * Called by {@link Worker#run()} to poll a message from the queue.
+     * Registers a listener to be notified each time the scheduler becomes quiescent, i.e. all queued messages are
+     * processed (so that all worker threads are terminated or idle).
+     * <p/>
+     * The listener is called by the (worker) thread that causes quiescence, so it should be short.
+     * A problem caused by the listener is recorded like a problem caused by the target.
      *
-     * @return The next queued message or {@code null} if the queue is empty.
+     * @throws NullPointerException when {@code listener} is {@code null}.
+     */
+    public final void addIdleListener(final Runnable listener) throws NullPointerException {
+        idleListeners.add(requireNonNull(listener));
+    }
+
+    /**
+     * Unregisters a listener {@linkplain #addIdleListener(Runnable) registered} before.
      */
-    private synchronized MSG poll(final boolean first) {
+    public final void removeIdleListener(final Runnable listener) {
+        idleListeners.remove(listener);
+    }
+
+    /**
+     * Called when the scheduler has become quiescent to notify joining threads, futures and listeners.
+     * Requires the lock to be held but temporarily releases it to notify futures and listeners, if any.
+     */
+    private void quiesced() {
+        // Only wake up joining threads if there are any, they all wait for the same ...
+        if (0 < variable.joining) {
+            quiet.signalAll();
+        }
+        if (!drained.isEmpty() || !idleListeners.isEmpty()) {
+            final List<CompletableFuture<Void>> due = drained;
+            drained = new ArrayList<>(0);
+            lock.unlock();
+            try {
+                for (final Runnable listener : idleListeners) {
+                    try {
+                        listener.run();
+                    } catch (final Throwable caught) {
+                        problems.add(caught);
+                    }
+                }
+                for (final CompletableFuture<Void> future : due) {
+                    future.complete(null);
+                }
+            } finally {
+                lock.lock();
+            }
+        }
+    }
+
+    private boolean isQuiescent() {
+        return (variable.started == variable.idle) && queue.isEmpty() && (0 == variable.processing);
+    }
+
+    /**
+     * Called by {@link Worker#run()} to finish the previous batch of messages and to poll the next one from the queue,
+     * both within one single lock acquisition.
+     *
+     * @param batch   Contains the previous batch (if not first) and will receive the next one.
+     * @param expired Contains the expired messages of the previous poll (if not first), to be passed to the
+     *                {@linkplain Builder#setOnExpiry(Consumer) expiry callback}, and will receive those
+     *                of this poll.
+     * @return {@code true} if the next batch or the expired messages contain at least one message,
+     * {@code false} if the queue is empty and the calling worker thread is going to terminate.
+     */
+    private boolean poll(final List<MSG> batch, final List<MSG> expired, final boolean first,
+                         final Recorder recorder) {
+        lock.lock();
+        try {
+            return pollLocked(batch, expired, first, recorder);
+        } finally {
+            unlock();
+        }
+    }
+
+    private boolean pollLocked(final List<MSG> batch, final List<MSG> expired, final boolean first,
+                               final Recorder recorder) {
         if (first) {
             // This thread now formally starts working (even if the queue might be empty) ...
             variable.working += 1;
+        } else {
+            // The previous batch is finally processed ...
+            variable.processing -= batch.size() + expired.size();
+            batch.clear();
+            expired.clear();
+
+            // After a spike, fewer worker threads may suffice for the rest ...
+            if (!queue.isEmpty() && strategy.isSurplus(queue.size() + variable.processing, variable.started)) {
+                variable.retired += 1;
+                variable.started -= 1;
+                variable.working -= 1;
+                return false;
+            }
         }
 
-        final MSG result = this.queue.poll();
-        if (null == result) {
+        drain(batch, expired, recorder);
+        if (batch.isEmpty() && expired.isEmpty() && (0 < keepAlive)) {
+            await(batch, expired, recorder);
+        }
+        if (batch.isEmpty() && expired.isEmpty()) {
             // This thread will stop working (even if just formally started) and definitely will be going to terminate,
             // so recognize that right now ...
             variable.started -= 1;
             variable.working -= 1;
 
             // If 'somebody' is waiting for no worker thread is running ...
-            if (1 > variable.started) {
-                assert (0 == variable.started);
-                assert (0 == variable.working);
-                assert (0 == queue.size());
-                this.notifyAll();
+            if (isQuiescent()) {
+                quiesced();
+            }
+            return false;
+
+        } else {
+            if (!batch.isEmpty() && (batch.size() + expired.size() < batchSize) && (0 < linger)) {
+                linger(batch, expired, recorder);
+            }
+            if (null != rateLimit) {
+                // Tokens may have accumulated since the messages left were queued,
+                // beyond those the working threads are going to take anyway ...
+                while ((queue.size() > variable.idle) && isLaunchable(variable.working)) {
+                    launch();
+                }
             }
+            return true;
         }
+    }
 
+    /**
+     * Moves queued messages to the given batch until the batch is full or the queue is empty.
+     * Requires the lock to be held.
+     * <p/>
+     * Messages whose {@linkplain Builder#setTimeToLive(long) time to live} has elapsed are discarded instead or, if
+     * there is an {@linkplain Builder#setOnExpiry(Consumer) expiry callback}, moved to {@code expired}
+     * (taking room of the batch). The age of the messages is determined by one single clock reading per call,
+     * taken only if a time to live is set at all.
+     * <p/>
+     * The time stamps of the drained messages are noted to the recorder, which records their waiting time when
+     * they are {@linkplain #process(List, boolean, Recorder) processed}, from the clock reading taken there anyway.
+     */
+    private void drain(final List<MSG> batch, final List<MSG> expired, final Recorder recorder) {
+        final long now = ((null == timeToLive) || queue.isEmpty()) ? 0 : nanoTime();
+        while (batch.size() + expired.size() < batchSize) {
+            final MSG message = queue.poll();
+            if (null == message) {
+                return;
+            }
+            if (0 < variable.blocked) {
+                space.signal();
+            }
+            if (isExpired(message, now - queue.stamp())) {
+                variable.expired += 1;
+                if (null != onExpiry) {
+                    expired.add(message);
+                    variable.processing += 1;
+                }
+            } else {
+                recorder.noteStamp(batch.size(), queue.stamp());
+                batch.add(message);
+                variable.processing += 1;
+            }
+        }
+    }
+
+    private boolean isExpired(final MSG message, final long wait) {
+        return (null != timeToLive) && (wait > TimeUnit.MILLISECONDS.toNanos(timeToLive.applyAsLong(message)));
+    }
+
+    /**
+     * Called by {@link #poll(List, List, boolean, Recorder)} to keep the calling worker thread alive for a while
+     * when the queue is empty. Requires the lock to be held.
+     * <p/>
+     * The given batch is empty on entry and remains empty if the keep-alive time elapsed without a new message.
+     */
+    private void await(final List<MSG> batch, final List<MSG> expired, final Recorder recorder) {
+        // This thread formally pauses working ...
+        variable.working -= 1;
+        variable.idle += 1;
+
+        // If 'somebody' is waiting for all worker threads being idle ...
+        if (isQuiescent()) {
+            quiesced();
+            // A message may have been queued while the lock was temporarily released ...
+            drain(batch, expired, recorder);
+        }
+
+        try {
+            final long time0 = currentTimeMillis();
+            for (long delta = 0;
+                 batch.isEmpty() && expired.isEmpty() && (delta < keepAlive);
+                 delta = currentTimeMillis() - time0) {
+                wakeup.await(keepAlive - delta, TimeUnit.MILLISECONDS);
+                drain(batch, expired, recorder);
+            }
+
+        } catch (final InterruptedException ignored) {
+            // Let this thread terminate as if the keep-alive time had elapsed
+            // (or process the batch as far as it may be filled) ...
+
+        } finally {
+            variable.idle -= 1;
+            variable.working += 1;
+        }
+    }
+
+    /**
+     * Called by {@link #poll(List, List, boolean, Recorder)} to wait a while for a not yet full batch to be filled up.
+     * Requires the lock to be held.
+     */
+    private void linger(final List<MSG> batch, final List<MSG> expired, final Recorder recorder) {
+        variable.lingering += 1;
+        try {
+            final long time0 = currentTimeMillis();
+            for (long delta = 0;
+                 (batch.size() + expired.size() < batchSize) && (delta < linger);
+                 delta = currentTimeMillis() - time0) {
+                wakeup.await(linger - delta, TimeUnit.MILLISECONDS);
+                drain(batch, expired, recorder);
+            }
+
+        } catch (final InterruptedException ignored) {
+            // Process the batch as far as it is filled ...
+
+        } finally {
+            variable.lingering -= 1;
+        }
+    }
+
+    /**
+     * Passes expired messages to the {@linkplain Builder#setOnExpiry(Consumer) expiry callback} and records
+     * any problems. Called by worker threads without holding the lock.
+     */
+    private void expire(final List<MSG> expired) {
+        final int size = expired.size();
+        for (int index = 0; index < size; ++index) {
+            try {
+                onExpiry.accept(expired.get(index));
+            } catch (final Throwable caught) {
+                problems.add(caught);
+            }
+        }
+    }
+
+    /**
+     * Passes a batch of messages to the target and records any problems.
+     * Called by worker threads and by passing threads (see {@link Overflow#callerRuns()}) without holding the lock.
+     *
+     * @param queued Indicates that the messages were {@linkplain #drain(List, List, Recorder) drained} from the queue,
+     *               so their waiting time is to be recorded.
+     */
+    private void process(final List<MSG> batch, final boolean queued, final Recorder recorder) {
+        long time0 = nanoTime();
+        if (null == batchTarget) {
+            final int size = batch.size();
+            for (int index = 0; index < size; ++index) {
+                if (queued) {
+                    recorder.recordWait(index, time0);
+                }
+                time0 = process(batch.get(index), recorder, time0);
+            }
+            strategy.feedback(size, time0);
+        } else {
+            final List<MSG> copy = new ArrayList<>(batch);
+            if (queued) {
+                for (int index = 0; index < copy.size(); ++index) {
+                    recorder.recordWait(index, time0);
+                }
+            }
+            if (throttle()) {
+                time0 = nanoTime();
+            }
+            boolean failed = false;
+            try {
+                batchTarget.accept(copy);
+            } catch (final Throwable caught) {
+                failed = true;
+                problems.add(new BatchException(copy, caught));
+            }
+            final long time1 = nanoTime();
+            recorder.recordService(time1 - time0, copy.size(), failed);
+            strategy.feedback(copy.size(), time1);
+        }
+    }
+
+    /**
+     * Passes a single message to the (non-batch) target and records the service time since {@code time0}
+     * and any problem.
+     *
+     * @return The time the target finished.
+     */
+    private long process(final MSG message, final Recorder recorder, final long time0) {
+        // Waiting for a token doesn't count as service time ...
+        final long start = throttle() ? nanoTime() : time0;
+        boolean failed = false;
+        try {
+            target.accept(message);
+        } catch (final Throwable caught) {
+            failed = true;
+            problems.add(caught);
+        }
+        final long result = nanoTime();
+        recorder.recordService(result - start, 1, failed);
         return result;
     }
 
+    /**
+     * Takes a token from the {@linkplain Builder#setRateLimit(double, int) rate limit}, if any,
+     * before the target is invoked.
+     *
+     * @return {@code true} if the calling thread had to wait for the token.
+     */
+    private boolean throttle() {
+        return (null != rateLimit) && rateLimit.acquire();
+    }
+
     /**
      * Causes the scheduler to (re)gain normal operation:
      * <ul>
@@ -192,8 +1003,13 @@ public class Scheduler<MSG> implements Consumer<MSG> {
      * <p/>
      * Does nothing if already started (respectively never {@linkplain #stop() stopped}).
      */
-    public final synchronized void start() {
-        variable.ready = true;
+    public final void start() {
+        lock.lock();
+        try {
+            variable.ready = true;
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -207,8 +1023,15 @@ public class Scheduler<MSG> implements Consumer<MSG> {
      * <p/>
      * Does nothing if already stopped.
      */
-    public final synchronized void stop() {
-        variable.ready = false;
+    public final void stop() {
+        lock.lock();
+        try {
+            variable.ready = false;
+            // Threads blocked by a full queue will fail ...
+            space.signalAll();
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -224,15 +1047,30 @@ public class Scheduler<MSG> implements Consumer<MSG> {
      * <p/>
      * If already stopped (but not asap) supplementary turns the stop into an asap stop.
      */
-    public final synchronized List<MSG> stopASAP() {
-        stop();
-        final List<MSG> result = new ArrayList<>(queue);
-        queue.clear();
-        return result;
+    public final List<MSG> stopASAP() {
+        lock.lock();
+        try {
+            variable.ready = false;
+            final List<MSG> result = queue.clear();
+            // Threads blocked by a full queue will fail ...
+            space.signalAll();
+            // 'Somebody' may wait for idle worker threads ...
+            if (isQuiescent()) {
+                quiesced();
+            }
+            return result;
+        } finally {
+            unlock();
+        }
     }
 
-    public final synchronized boolean isStopped() {
-        return !variable.ready;
+    public final boolean isStopped() {
+        lock.lock();
+        try {
+            return !variable.ready;
+        } finally {
+            lock.unlock();
+        }
     }
 
     private static class Variable {
@@ -246,25 +1084,386 @@ public class Scheduler<MSG> implements Consumer<MSG> {
          * started working (started from worker´s point of view).
          */
         private int working = 0;
+        /**
+         * The number of messages drained from the queue by working worker threads but not yet finally processed.
+         */
+        private int processing = 0;
+        /**
+         * The number of working worker threads currently waiting for their batch to be filled up.
+         */
+        private int lingering = 0;
+        /**
+         * The number of passing threads currently blocked by a full queue.
+         */
+        private int blocked = 0;
+        /**
+         * Counters according to the {@link Overflow} policy.
+         */
+        private long rejected = 0;
+        private long dropped = 0;
+        private long callerRuns = 0;
+        /**
+         * The number of foreign threads currently processing a message {@linkplain Scheduler#handOff(Object) handed
+         * off} to them. Counted like worker threads by the {@link Strategy}.
+         */
+        private int handingOff = 0;
+        /**
+         * The number of worker threads retired as surplus.
+         */
+        private long retired = 0;
+        /**
+         * The number of messages discarded because their time to live elapsed.
+         */
+        private long expired = 0;
         /**
          * Indicates if the instance is ready to receive (and process) messages.
          * Initially {@code true}. If not the instance will behave unspecific as
          * a listener throwing an IllegalStateException when a message is passed.
          */
         private boolean ready = true;
+        /**
+         * The number of threads currently {@linkplain Scheduler#join(long) joining}.
+         */
+        private int joining = 0;
+        /**
+         * The number of started worker threads currently kept alive waiting for further messages.
+         * Those are a subset of the {@linkplain #started started} but not of the {@linkplain #working working}
+         * worker threads.
+         */
+        private int idle = 0;
     }
 
     public static class Builder<MSG> {
 
         private final Strategy strategy;
         private final Consumer<MSG> target;
+        private final Consumer<List<MSG>> batchTarget;
+        private int batchSize = 1;
+        private long linger = 0;
+        private long keepAlive = 0;
+        private int capacity = Integer.MAX_VALUE;
+        private Overflow overflow = Overflow.reject();
+        private BiFunction<Runnable, String, Thread> newThread = Thread::new;
+        private ToIntFunction<? super MSG> priority = null;
+        private int[] weights = null;
+        private int heapLimit = Integer.MAX_VALUE;
+        private File spillDirectory = null;
+        private Codec<MSG> codec = null;
+        private int problemCapacity = Problems.DEFAULT_CAPACITY;
+        private Consumer<? super Throwable> onProblem = null;
+        private double rate = 0;
+        private int burst = 0;
+        private Function<? super MSG, ?> keyOf = null;
+        private ToLongFunction<? super MSG> timeToLive = null;
+        private Consumer<? super MSG> onExpiry = null;
 
-        private Builder(final Strategy strategy, final Consumer<MSG> target) throws NullPointerException {
+        private Builder(final Strategy strategy, final Consumer<MSG> target, final Consumer<List<MSG>> batchTarget)
+                throws NullPointerException {
             this.strategy = requireNonNull(strategy);
-            this.target = requireNonNull(target);
+            this.target = target;
+            this.batchTarget = batchTarget;
+        }
+
+        /**
+         * Sets the maximum number of messages a worker thread drains from the queue at once.
+         * A {@linkplain Scheduler#batchBuilder(Strategy, Consumer) batch target} receives them as one batch,
+         * a message target receives them one by one.
+         * <p/>
+         * Default is {@code 1}.
+         *
+         * @throws IllegalArgumentException when {@code batchSize} is less than {@code 1}.
+         */
+        public final Builder<MSG> setBatchSize(final int batchSize) throws IllegalArgumentException {
+            if (1 > batchSize) {
+                throw new IllegalArgumentException("1 > batchSize (" + batchSize + ")");
+            } else {
+                this.batchSize = batchSize;
+                return this;
+            }
+        }
+
+        /**
+         * Sets the time a worker thread waits for further messages to fill up a batch that is not yet full
+         * before it processes the batch anyway.
+         * <p/>
+         * Default is {@code 0}: a batch is processed as far as it could be filled at once.
+         *
+         * @param millis The linger time in milliseconds, greater or equal to {@code 0}.
+         * @throws IllegalArgumentException when {@code millis} is negative.
+         */
+        public final Builder<MSG> setLinger(final long millis) throws IllegalArgumentException {
+            if (0 > millis) {
+                throw new IllegalArgumentException("0 > millis (" + millis + ")");
+            } else {
+                this.linger = millis;
+                return this;
+            }
+        }
+
+        /**
+         * Sets the time an idle worker thread is kept alive waiting for further messages before it terminates.
+         * Incoming messages are preferably handed over to such idle worker threads rather than launching new ones.
+         * <p/>
+         * Default is {@code 0}: a worker thread terminates as soon as there are no more messages queued.
+         *
+         * @param millis The keep-alive time in milliseconds, greater or equal to {@code 0}.
+         * @throws IllegalArgumentException when {@code millis} is negative.
+         */
+        public final Builder<MSG> setKeepAlive(final long millis) throws IllegalArgumentException {
+            if (0 > millis) {
+                throw new IllegalArgumentException("0 > millis (" + millis + ")");
+            } else {
+                this.keepAlive = millis;
+                return this;
+            }
+        }
+
+        /**
+         * Limits the number of messages that may be queued for processing (not including those already in
+         * processing) and sets the policy how to treat further messages while the queue is full.
+         * <p/>
+         * Default is {@link Integer#MAX_VALUE}: the queue is virtually unlimited.
+         *
+         * @throws IllegalArgumentException when {@code capacity} is less than {@code 1}.
+         * @throws NullPointerException     when {@code overflow} is {@code null}.
+         */
+        public final Builder<MSG> setCapacity(final int capacity, final Overflow overflow)
+                throws IllegalArgumentException, NullPointerException {
+            if (1 > capacity) {
+                throw new IllegalArgumentException("1 > capacity (" + capacity + ")");
+            } else {
+                this.capacity = capacity;
+                this.overflow = requireNonNull(overflow);
+                return this;
+            }
+        }
+
+        /**
+         * Divides the queue into some lanes of different priority, one lane per given weight.
+         * <p/>
+         * The {@code priority} function determines the lane of a message: {@code 0} is the lane of the highest
+         * priority, a value out of range means the nearest lane. Each lane is FIFO on its own. The lanes are drained
+         * weighted-fair: as long as several lanes hold messages, each of them gets a share of the worker threads'
+         * polls according to its weight. So a flood of messages of low priority doesn't delay those of high
+         * priority much, while the messages of low priority are not starved.
+         * <p/>
+         * When the queue is full and the {@link Overflow#dropOldest()} policy applies, the oldest message of the
+         * lowest priority is dropped. {@link Scheduler#stopASAP()} returns the un-queued messages in order of
+         * priority.
+         * <p/>
+         * Default: a single FIFO queue.
+         *
+         * @param priority A function that determines the priority of a message.
+         * @param weights  The weights of the lanes in order of priority, e.g. {@code 8, 2, 1}.
+         * @throws NullPointerException     when {@code priority} is {@code null}.
+         * @throws IllegalArgumentException when {@code weights} is empty or contains a value less than {@code 1}.
+         */
+        public final Builder<MSG> setPriorities(final ToIntFunction<? super MSG> priority, final int... weights)
+                throws NullPointerException, IllegalArgumentException {
+            if (0 == weights.length) {
+                throw new IllegalArgumentException("no weights");
+            }
+            for (final int weight : weights) {
+                if (1 > weight) {
+                    throw new IllegalArgumentException("1 > weight (" + weight + ")");
+                }
+            }
+            this.priority = requireNonNull(priority);
+            this.weights = weights.clone();
+            return this;
+        }
+
+        /**
+         * Limits the number of queued messages held in the heap and lets further messages spill to memory-mapped
+         * segment files in the given directory, encoded by the given codec. The worker threads read them back in
+         * order. So an overload burst doesn't balloon the heap: throughput degrades (by encoding and decoding)
+         * rather than the JVM runs out of memory.
+         * <p/>
+         * A message that can't be decoded is recorded as a problem (see {@link Scheduler#getProblems()}) and skipped.
+         * If a segment file can't be created, passing a message fails with an {@link java.io.UncheckedIOException}.
+         * With {@linkplain #setPriorities(ToIntFunction, int...) priorities}, the limit applies to each lane.
+         * <p/>
+         * Default: no spilling, all queued messages are held in the heap.
+         *
+         * @throws IllegalArgumentException when {@code heapLimit} is less than {@code 0}.
+         * @throws NullPointerException     when {@code directory} or {@code codec} is {@code null}.
+         */
+        public final Builder<MSG> setSpill(final int heapLimit, final File directory, final Codec<MSG> codec)
+                throws IllegalArgumentException, NullPointerException {
+            if (0 > heapLimit) {
+                throw new IllegalArgumentException("0 > heapLimit (" + heapLimit + ")");
+            } else {
+                this.heapLimit = heapLimit;
+                this.spillDirectory = requireNonNull(directory);
+                this.codec = requireNonNull(codec);
+                return this;
+            }
+        }
+
+        /**
+         * Sets the maximum number of problems to be retained (see {@link Scheduler#getProblems()}).
+         * When exceeded, the oldest retained problem is dropped in favour of the new one.
+         * <p/>
+         * Default is {@code 1024}.
+         *
+         * @throws IllegalArgumentException when {@code capacity} is less than {@code 0}.
+         */
+        public final Builder<MSG> setProblemCapacity(final int capacity) throws IllegalArgumentException {
+            if (0 > capacity) {
+                throw new IllegalArgumentException("0 > capacity (" + capacity + ")");
+            } else {
+                this.problemCapacity = capacity;
+                return this;
+            }
+        }
+
+        /**
+         * Sets a handler that is passed each problem as soon as it occurs, within the worker thread concerned,
+         * before the problem gets retained. A problem caused by the handler itself is attached as suppressed to the
+         * original problem.
+         * <p/>
+         * Default: no handler.
+         *
+         * @throws NullPointerException when {@code onProblem} is {@code null}.
+         */
+        public final Builder<MSG> setOnProblem(final Consumer<? super Throwable> onProblem)
+                throws NullPointerException {
+            this.onProblem = requireNonNull(onProblem);
+            return this;
+        }
+
+        /**
+         * Causes the scheduler to coalesce messages by key: a passed message replaces a queued message with the same
+         * key that is not yet in processing (latest wins). The replacing message takes over the position of the
+         * replaced one in the queue, which is dropped unprocessed. So of a burst of updates to the same entity,
+         * only the latest is processed.
+         * <p/>
+         * A coalesced message counts as {@linkplain Statistics#getAccepted() accepted} but neither needs room in the
+         * queue nor adds to {@link Scheduler#getLoad()} or {@link Scheduler#getOverhead()}.
+         * See {@link Scheduler#getCoalesced()}. With {@linkplain #setPriorities(ToIntFunction, int...) priorities},
+         * a replacing message remains in the lane of the replaced one.
+         * <p/>
+         * Can't be combined with {@linkplain #setSpill(int, File, Codec) spilling}.
+         * <p/>
+         * Default: no coalescing, each message is processed.
+         *
+         * @param keyOf A function that determines the key of a message, appropriate for a {@link java.util.HashMap}.
+         * @throws NullPointerException when {@code keyOf} is {@code null}.
+         */
+        public final Builder<MSG> setCoalescing(final Function<? super MSG, ?> keyOf) throws NullPointerException {
+            this.keyOf = requireNonNull(keyOf);
+            return this;
+        }
+
+        /**
+         * Sets the time a message may be queued before it expires. An expired message is discarded instead of being
+         * passed to the target when a worker thread takes it from the queue. So after a backlog, the worker threads
+         * don't waste time with messages no one cares about anymore (see {@link Scheduler#getExpired()}).
+         * <p/>
+         * The age of a message is determined by a single clock reading per batch taken from the queue
+         * rather than per message.
+         * <p/>
+         * Default: messages don't expire.
+         *
+         * @param millis The time to live in milliseconds, greater or equal to {@code 0}.
+         * @throws IllegalArgumentException when {@code millis} is negative.
+         */
+        public final Builder<MSG> setTimeToLive(final long millis) throws IllegalArgumentException {
+            if (0 > millis) {
+                throw new IllegalArgumentException("0 > millis (" + millis + ")");
+            } else {
+                this.timeToLive = message -> millis;
+                return this;
+            }
+        }
+
+        /**
+         * Sets a function that determines the time in milliseconds each message may be queued before it expires,
+         * e.g. by a deadline carried by the message itself.
+         *
+         * @throws NullPointerException when {@code millisOf} is {@code null}.
+         * @see #setTimeToLive(long)
+         */
+        public final Builder<MSG> setTimeToLive(final ToLongFunction<? super MSG> millisOf)
+                throws NullPointerException {
+            this.timeToLive = requireNonNull(millisOf);
+            return this;
+        }
+
+        /**
+         * Sets a callback an expired message is passed to (instead of the target) by the worker thread that discards
+         * it. A problem caused by the callback is recorded like a problem caused by the target.
+         * <p/>
+         * Default: no callback, expired messages are just counted.
+         *
+         * @throws NullPointerException when {@code onExpiry} is {@code null}.
+         * @see #setTimeToLive(long)
+         */
+        public final Builder<MSG> setOnExpiry(final Consumer<? super MSG> onExpiry) throws NullPointerException {
+            this.onExpiry = requireNonNull(onExpiry);
+            return this;
+        }
+
+        /**
+         * Limits the rate of target invocations by a token bucket: each invocation of the target (a whole batch for a
+         * {@linkplain Scheduler#batchBuilder(Strategy, Consumer) batch target}) takes a token, the bucket is refilled
+         * by {@code rate} tokens per second and holds up to {@code burst} tokens. A worker thread waits for a token
+         * before it invokes the target, so a downstream quota is kept without the target itself sleeping.
+         * <p/>
+         * While the bucket is empty, no further worker threads are started (beyond the first), regardless of the
+         * {@link Strategy}: they would just wait for tokens.
+         * <p/>
+         * Default: no rate limit.
+         *
+         * @param rate  The number of target invocations per second.
+         * @param burst The max. number of target invocations in a burst, i.e. without waiting after a quiet period.
+         * @throws IllegalArgumentException when {@code rate} is not greater than {@code 0}
+         *                                  or {@code burst} is less than {@code 1}.
+         */
+        public final Builder<MSG> setRateLimit(final double rate, final int burst) throws IllegalArgumentException {
+            if (!(0 < rate) || (1 > burst)) {
+                throw new IllegalArgumentException(
+                        format("!(0 < rate(%s)) || (1 > burst(%d))", rate, burst));
+            } else {
+                this.rate = rate;
+                this.burst = burst;
+                return this;
+            }
+        }
+
+        /**
+         * Sets the function to create (but not to start) new worker threads from a {@link Runnable} and a name.
+         * <p/>
+         * Default is {@code Thread::new}: platform threads.
+         *
+         * @throws NullPointerException when {@code newThread} is {@code null}.
+         */
+        public final Builder<MSG> setNewThread(final BiFunction<Runnable, String, Thread> newThread)
+                throws NullPointerException {
+            this.newThread = requireNonNull(newThread);
+            return this;
         }
 
-        public Scheduler<MSG> build() {
+        /**
+         * Causes the scheduler to process messages in virtual threads rather than in platform threads.
+         * <p/>
+         * Virtual threads are cheap, so a {@link Strategy} may allow tens of thousands of concurrent worker threads
+         * when the target is mostly blocked on I/O.
+         *
+         * @throws UnsupportedOperationException when the runtime doesn't support virtual threads (prior to Java 21).
+         */
+        public final Builder<MSG> setVirtualThreads() throws UnsupportedOperationException {
+            return setNewThread(Launcher.virtual());
+        }
+
+        /**
+         * @throws IllegalStateException when {@linkplain #setCoalescing(Function) coalescing} is combined with
+         *                               {@linkplain #setSpill(int, File, Codec) spilling}.
+         */
+        public Scheduler<MSG> build() throws IllegalStateException {
+            if ((null != keyOf) && (null != codec)) {
+                throw new IllegalStateException("coalescing can't be combined with spilling");
+            }
             return new Scheduler<>(this);
         }
     }
@@ -272,20 +1471,18 @@ public class Scheduler<MSG> implements Consumer<MSG> {
     private class Worker implements Runnable {
         @Override
         public final void run() {
-            MSG message = poll(true);
-            while (null != message) {
-                try {
-                    target.accept(message);
-                } catch (final Throwable caught) {
-                    addProblem(caught);
+            final Recorder recorder = recorders.acquire();
+            try {
+                final List<MSG> batch = new ArrayList<>(0);
+                final List<MSG> expired = new ArrayList<>(0);
+                for (boolean first = true; poll(batch, expired, first, recorder); first = false) {
+                    expire(expired);
+                    if (!batch.isEmpty()) {
+                        process(batch, true, recorder);
+                    }
                 }
-                message = poll(false);
-            }
-        }
-
-        private void addProblem(final Throwable caught) {
-            synchronized (problems) {
-                problems.add(caught);
+            } finally {
+                recorders.release(recorder);
             }
         }
     }
@@ -0,0 +1,308 @@
+package net.team33.async.consumer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * A FIFO {@link Backlog} that holds up to a limited number of elements in the heap and spills further elements,
+ * encoded by a {@link Codec}, to memory-mapped segment files.
+ * <p/>
+ * As long as any elements are spilled, new elements are spilled as well, so the order is preserved.
+ * A segment file is deleted as soon as it is mapped (where the platform allows), so it doesn't outlive the process.
+ * Drained segments are returned to a {@link Reserve} for reuse rather than left to the garbage collector, which is
+ * the only way to unmap them.
+ * <p/>
+ * Not thread-safe: the {@link Scheduler} accesses it only while holding its lock.
+ */
+class Spill<E> implements Backlog<E> {
+
+    static final int SEGMENT_SIZE = 16 << 20;
+
+    /**
+     * The max. number of drained segments kept for reuse by a {@link Reserve}.
+     */
+    static final int MAX_FREE = 2;
+
+    /**
+     * A record consists of the length of the encoded element (int), the time stamp (long) and the encoded element.
+     */
+    private static final int HEADER_SIZE = 4 + 8;
+
+    private final Ring<E> heap = new Ring<>();
+    private final Deque<Segment> segments = new ArrayDeque<>(0);
+    private final int heapLimit;
+    private final Reserve reserve;
+    private final Codec<E> codec;
+    private final Consumer<? super Throwable> problems;
+    private int spilled = 0;
+    private long stamp = 0;
+
+    /**
+     * @param problems Takes the problems of elements that can't be read back from a segment file.
+     *                 Called while the scheduler holds its lock, so it should just collect them.
+     */
+    Spill(final int heapLimit, final Reserve reserve, final Codec<E> codec,
+          final Consumer<? super Throwable> problems) {
+        this.heapLimit = heapLimit;
+        this.reserve = reserve;
+        this.codec = codec;
+        this.problems = problems;
+    }
+
+    @Override
+    public final int size() {
+        return heap.size() + spilled;
+    }
+
+    @Override
+    public final boolean isEmpty() {
+        return heap.isEmpty() && (0 == spilled);
+    }
+
+    /**
+     * @throws UncheckedIOException when a segment file can't be created.
+     */
+    @Override
+    public final void add(final E element, final long stamp) throws NullPointerException, UncheckedIOException {
+        if (null == element) {
+            throw new NullPointerException("element == null");
+        }
+        if ((0 == spilled) && (heap.size() < heapLimit)) {
+            heap.add(element, stamp);
+        } else {
+            spill(element, stamp);
+        }
+        if (heap.size() >= heapLimit) {
+            // Further elements are going to be spilled ...
+            reserve.anticipate();
+        }
+    }
+
+    private void spill(final E element, final long stamp) {
+        final byte[] bytes = codec.encode(element);
+        final int recordSize = HEADER_SIZE + bytes.length;
+        Segment tail = segments.peekLast();
+        if ((null == tail) || (tail.remaining() < recordSize)) {
+            tail = reserve.take(recordSize);
+            segments.addLast(tail);
+        }
+        tail.write(bytes, stamp);
+        spilled += 1;
+    }
+
+    @Override
+    public final E poll() {
+        if (heap.isEmpty()) {
+            return unspill();
+        } else {
+            final E result = heap.poll();
+            stamp = heap.stamp();
+            return result;
+        }
+    }
+
+    /**
+     * Reads back the oldest spilled element or retrieves {@code null} if there is none.
+     * An element that can't be decoded is passed to the problems and skipped.
+     */
+    private E unspill() {
+        while (0 < spilled) {
+            final Segment head = segments.peekFirst();
+            if (head.isExhausted()) {
+                reserve.give(segments.removeFirst());
+            } else {
+                final byte[] bytes = head.read();
+                stamp = head.stamp;
+                spilled -= 1;
+                if (0 == spilled) {
+                    // A burst is over: don't keep more segments than the reserve allows ...
+                    release();
+                }
+                try {
+                    return codec.decode(bytes);
+                } catch (final RuntimeException caught) {
+                    problems.accept(caught);
+                }
+            }
+        }
+        return null;
+    }
+
+    private void release() {
+        for (Segment segment = segments.pollFirst(); null != segment; segment = segments.pollFirst()) {
+            reserve.give(segment);
+        }
+    }
+
+    @Override
+    public final E evict() {
+        return poll();
+    }
+
+    @Override
+    public final long stamp() {
+        return stamp;
+    }
+
+    @Override
+    public final List<E> clear() {
+        final List<E> result = heap.clear();
+        for (E element = unspill(); null != element; element = unspill()) {
+            result.add(element);
+        }
+        release();
+        return result;
+    }
+
+    /**
+     * Provides segments to the {@link Spill} lanes of a {@link Scheduler}: keeps up to {@link #MAX_FREE} drained
+     * segments for reuse and lets new segments be created outside the lock of the scheduler.
+     * <p/>
+     * Apart from {@link #prepare()}, the scheduler calls it only while holding its lock.
+     */
+    static final class Reserve {
+
+        private final File directory;
+        private final Queue<Segment> free = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean wanted = new AtomicBoolean(false);
+
+        Reserve(final File directory) {
+            this.directory = directory;
+        }
+
+        /**
+         * Called by a producer before acquiring the lock of the scheduler to create a segment if one will be needed
+         * soon, so the file system is not accessed while holding the lock.
+         */
+        final void prepare() {
+            if (wanted.get() && wanted.compareAndSet(true, false)) {
+                try {
+                    free.add(new Segment(directory, SEGMENT_SIZE));
+                } catch (final UncheckedIOException ignored) {
+                    // take() will try again and report the problem to the producer in charge ...
+                }
+            }
+        }
+
+        /**
+         * Notes that a segment will be needed soon.
+         */
+        private void anticipate() {
+            if (free.isEmpty() && !wanted.get()) {
+                wanted.set(true);
+            }
+        }
+
+        /**
+         * Retrieves an empty segment that can take a record of the given size.
+         *
+         * @throws UncheckedIOException when a new segment file can't be created.
+         */
+        private Segment take(final int recordSize) throws UncheckedIOException {
+            if (SEGMENT_SIZE < recordSize) {
+                return new Segment(directory, recordSize);
+            }
+            final Segment result = free.poll();
+            anticipate();
+            // If not prepared in time, the segment has to be created while holding the lock anyway ...
+            return (null == result) ? new Segment(directory, SEGMENT_SIZE) : result;
+        }
+
+        /**
+         * Takes back a drained segment, either for reuse or, if the reserve is full, to be unmapped
+         * when garbage collected.
+         */
+        private void give(final Segment segment) {
+            if ((SEGMENT_SIZE == segment.capacity()) && (MAX_FREE > free.size())) {
+                segment.reset();
+                free.add(segment);
+            }
+        }
+    }
+
+    private static final class Segment {
+
+        private final File file;
+        /**
+         * Its position is the write position.
+         */
+        private final MappedByteBuffer buffer;
+        private int readPosition = 0;
+        private long stamp = 0;
+
+        private Segment(final File directory, final int size) throws UncheckedIOException {
+            try {
+                file = File.createTempFile("spill", ".segment", directory);
+            } catch (final IOException caught) {
+                throw new UncheckedIOException(caught);
+            }
+            try (final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                 final FileChannel channel = raf.getChannel()) {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            } catch (final IOException caught) {
+                // Don't leave the file behind ...
+                delete();
+                throw new UncheckedIOException(caught);
+            } catch (final RuntimeException caught) {
+                delete();
+                throw caught;
+            }
+            // The mapping remains valid without the file being visible (at least on POSIX platforms) ...
+            delete();
+        }
+
+        private int remaining() {
+            return buffer.remaining();
+        }
+
+        private int capacity() {
+            return buffer.capacity();
+        }
+
+        private void reset() {
+            buffer.clear();
+            readPosition = 0;
+            stamp = 0;
+        }
+
+        private boolean isExhausted() {
+            return readPosition == buffer.position();
+        }
+
+        private void write(final byte[] bytes, final long stamp) {
+            buffer.putInt(bytes.length).putLong(stamp).put(bytes);
+        }
+
+        private byte[] read() {
+            final int length = buffer.getInt(readPosition);
+            stamp = buffer.getLong(readPosition + 4);
+            final byte[] result = new byte[length];
+            final ByteBuffer view = buffer.duplicate();
+            view.position(readPosition + HEADER_SIZE);
+            view.get(result);
+            readPosition += HEADER_SIZE + length;
+            return result;
+        }
+
+        /**
+         * Deletes the segment file. The mapped memory itself is released when the buffer gets garbage collected.
+         */
+        private void delete() {
+            if (file.exists() && !file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+    }
+}
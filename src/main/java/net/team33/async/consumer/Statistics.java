@@ -0,0 +1,85 @@
+package net.team33.async.consumer;
+
+/**
+ * Represents a snapshot of the statistics of a {@link Scheduler}.
+ *
+ * @see Scheduler#getStatistics()
+ */
+public class Statistics {
+
+    private static final String TO_STRING_FORMAT = "Statistics(accepted(%d), processed(%d), problems(%d), " +
+            "launched(%d), peakRunning(%d), queueWait(%s), serviceTime(%s))";
+
+    private final long accepted;
+    private final long processed;
+    private final long problems;
+    private final long launched;
+    private final int peakRunning;
+    private final Histogram queueWait;
+    private final Histogram serviceTime;
+
+    Statistics(final long accepted, final Recorder.Pool recorders, final long launched, final int peakRunning) {
+        this.accepted = accepted;
+        this.processed = recorders.getProcessed();
+        this.problems = recorders.getProblems();
+        this.launched = launched;
+        this.peakRunning = peakRunning;
+        this.queueWait = recorders.getWaits();
+        this.serviceTime = recorders.getServices();
+    }
+
+    /**
+     * The total number of messages accepted for processing.
+     */
+    public final long getAccepted() {
+        return accepted;
+    }
+
+    /**
+     * The total number of messages finally processed (successfully or not).
+     */
+    public final long getProcessed() {
+        return processed;
+    }
+
+    /**
+     * The total number of problems occurred while processing messages.
+     */
+    public final long getProblems() {
+        return problems;
+    }
+
+    /**
+     * The total number of worker threads launched.
+     */
+    public final long getLaunched() {
+        return launched;
+    }
+
+    /**
+     * The maximum number of worker threads running at the same time (see {@link Scheduler#getRunning()}).
+     */
+    public final int getPeakRunning() {
+        return peakRunning;
+    }
+
+    /**
+     * The distribution of the time messages were queued until a worker thread passed them to the target.
+     */
+    public final Histogram getQueueWait() {
+        return queueWait;
+    }
+
+    /**
+     * The distribution of the time the target spent to process a message (respectively a batch of messages).
+     */
+    public final Histogram getServiceTime() {
+        return serviceTime;
+    }
+
+    @Override
+    public final String toString() {
+        return String.format(TO_STRING_FORMAT,
+                accepted, processed, problems, launched, peakRunning, queueWait, serviceTime);
+    }
+}
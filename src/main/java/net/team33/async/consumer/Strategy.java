@@ -8,16 +8,30 @@ import static java.util.Objects.requireNonNull;
  * Abstracts a strategy for launching new worker threads dependant on numbers
  * of already started worker threads and passed but not finally processed
  * messages.
+ * <p/>
+ * A {@link Scheduler} also applies its strategy the other way round: when the load has dropped so far that
+ * fewer worker threads would suffice, surplus worker threads retire before the queue is completely empty.
  */
 public class Strategy implements Predicate<Payload> {
 
     private static final String TO_STRING_FORMAT = "Strategy(function(%s), loadFactor(%d), threshold(%d))";
+    private static final String ADAPTIVE_FORMAT = "Strategy(function(%s), loadFactor(%d), %s)";
+    /**
+     * Bounds {@link #capacity()}, so even a cubic function can't overflow.
+     */
+    private static final int MAX_CAPACITY_THREADS = 1024;
     private final Function function;
     private final int loadFactor;
     private final int threshold;
+    private final Adaptive adaptive;
 
     private Strategy(final Function function, final int loadFactor, final int threshold)
             throws NullPointerException, IllegalArgumentException {
+        this(function, loadFactor, threshold, null);
+    }
+
+    private Strategy(final Function function, final int loadFactor, final int threshold, final Adaptive adaptive)
+            throws NullPointerException, IllegalArgumentException {
 
         this.function = requireNonNull(function, "function == null");
         if ((1 > loadFactor) || (1 > threshold)) {
@@ -26,6 +40,7 @@ public class Strategy implements Predicate<Payload> {
         } else {
             this.loadFactor = loadFactor;
             this.threshold = threshold;
+            this.adaptive = adaptive;
         }
     }
 
@@ -104,6 +119,53 @@ public class Strategy implements Predicate<Payload> {
         return cubic(loadFactor, Integer.MAX_VALUE);
     }
 
+    /**
+     * Retrieves a strategy that provides a linear relation between already started worker threads and passed but not
+     * finally processed messages and tunes its max. number of threads on its own.
+     * <p/>
+     * The max. number of threads starts at {@code min} and is adjusted periodically by hill-climbing on the
+     * throughput (finally processed messages per time) observed by the scheduler: it keeps growing as long as more
+     * threads increase the throughput and shrinks when more threads decrease it, e.g. when a downstream system slows
+     * down. It is held while it doesn't limit the threads, so a falling arrival rate of the messages doesn't shrink it.
+     * <p/>
+     * An adaptive strategy is stateful: use a separate instance for each scheduler.
+     * A {@link Scheduler}, an {@link IntScheduler} and a {@link LongScheduler} feed it back, and so do the consumers
+     * built on a scheduler, like a {@link KeyedScheduler}, a {@link JournaledScheduler} or a {@link Pipeline}.
+     * A {@link ConcurrentScheduler} doesn't, with it the strategy behaves like
+     * {@link #linear(int, int) linear(loadFactor, min)}.
+     *
+     * @param loadFactor The relation factor (messages / threads).
+     * @param min        A min. value of the max. number of threads.
+     * @param max        A max. value of the max. number of threads.
+     * @param window     The time in milliseconds between two adjustments.
+     * @return Not {@code null}.
+     * @throws IllegalArgumentException when (loadFactor &lt; 1), (min &lt; 1), (max &lt; min) or (window &lt; 1)
+     */
+    public static Strategy adaptive(final int loadFactor, final int min, final int max, final long window)
+            throws IllegalArgumentException {
+        if ((max < min) || (1 > window)) {
+            throw new IllegalArgumentException(
+                    String.format("(max(%d) < min(%d)) || (1 > window(%d))", max, min, window));
+        } else {
+            return new Strategy(Rational.LINEAR, loadFactor, min, new Adaptive(min, max, window));
+        }
+    }
+
+    /**
+     * Retrieves an {@linkplain #adaptive(int, int, int, long) adaptive strategy} that adjusts its max. number of
+     * threads every 100 milliseconds.
+     *
+     * @param loadFactor The relation factor (messages / threads).
+     * @param min        A min. value of the max. number of threads.
+     * @param max        A max. value of the max. number of threads.
+     * @return Not {@code null}.
+     * @throws IllegalArgumentException when (loadFactor &lt; 1), (min &lt; 1) or (max &lt; min)
+     */
+    public static Strategy adaptive(final int loadFactor, final int min, final int max)
+            throws IllegalArgumentException {
+        return adaptive(loadFactor, min, max, 100);
+    }
+
     private static int hashCode(final int... singles) {
         return hashCode(singles.length - 1, singles);
     }
@@ -119,11 +181,64 @@ public class Strategy implements Predicate<Payload> {
      */
     @Override
     public final boolean test(final Payload payload) throws NullPointerException {
-        return test(payload.getRunning(), payload.getCharge());
+        return test(payload.getCharge(), payload.getRunning());
     }
 
-    private boolean test(final int running, final int charge) {
-        return ((running < threshold) && (function.load(loadFactor, running) < charge));
+    /**
+     * Primitive variant of {@link #test(Payload)} for the schedulers' hot paths, doesn't allocate a {@link Payload}.
+     */
+    final boolean test(final int charge, final int running) {
+        if (null == adaptive) {
+            return ((running < threshold) && (function.load(loadFactor, running) < charge));
+        } else if (function.load(loadFactor, running) < charge) {
+            if (running < adaptive.getLimit()) {
+                return true;
+            } else {
+                adaptive.saturate();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines if one of the given running worker threads is surplus and may retire although there are still
+     * messages to be processed. Unlike {@link #test(int, int)} with one thread less, this requires the charge to fit
+     * half of the other threads, so the number of threads doesn't flap around a threshold (hysteresis): a retired
+     * thread is only launched again when the charge has at least doubled.
+     * Also a thread beyond the max. number of threads of an adaptive strategy is surplus.
+     * <p/>
+     * The last running worker thread is never surplus.
+     */
+    final boolean isSurplus(final int charge, final int running) {
+        if (1 >= running) {
+            return false;
+        } else if ((null != adaptive) && (running > adaptive.getLimit())) {
+            return true;
+        } else {
+            return function.load(loadFactor, (running - 1) / 2) >= charge;
+        }
+    }
+
+    /**
+     * Retrieves the number of passed but not finally processed messages at which this strategy reaches its max. number
+     * of threads, i.e. the load a scheduler can take without queueing beyond that.
+     * A virtually unlimited max. number of threads is treated as {@code 1024}.
+     */
+    final int capacity() {
+        final long running = Math.min(MAX_CAPACITY_THREADS, (null == adaptive) ? threshold : adaptive.getLimit());
+        return (int) Math.min(Integer.MAX_VALUE, function.load(loadFactor, running));
+    }
+
+    /**
+     * Called by the worker threads of a scheduler to report some finally processed messages.
+     *
+     * @param processed The number of messages.
+     * @param now       The current {@link System#nanoTime()}.
+     */
+    final void feedback(final int processed, final long now) {
+        if (null != adaptive) {
+            adaptive.feedback(processed, now);
+        }
     }
 
     @Override
@@ -132,17 +247,23 @@ public class Strategy implements Predicate<Payload> {
     }
 
     private boolean equals(final Strategy other) {
-        return (loadFactor == other.loadFactor) && (threshold == other.threshold) && function.equals(other.function);
+        // An adaptive strategy is stateful and so only equals itself ...
+        return (null == adaptive) && (null == other.adaptive)
+                && (loadFactor == other.loadFactor) && (threshold == other.threshold) && function.equals(other.function);
     }
 
     @Override
     public final int hashCode() {
-        return hashCode(function.hashCode(), loadFactor, threshold);
+        return (null == adaptive)
+                ? hashCode(function.hashCode(), loadFactor, threshold)
+                : System.identityHashCode(this);
     }
 
     @Override
     public final String toString() {
-        return String.format(TO_STRING_FORMAT, function, loadFactor, threshold);
+        return (null == adaptive)
+                ? String.format(TO_STRING_FORMAT, function, loadFactor, threshold)
+                : String.format(ADAPTIVE_FORMAT, function, loadFactor, adaptive);
     }
 
     private enum Rational implements Function {
@@ -0,0 +1,98 @@
+package net.team33.async.consumer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.lang.System.nanoTime;
+
+/**
+ * A token bucket that limits the rate of some operations while allowing bursts up to a capacity.
+ * <p/>
+ * The bucket is represented by a single time stamp (the time at which it would be virtually empty), so taking a
+ * token is a compare-and-set rather than a lock acquisition. A token may be taken in advance: the caller then waits
+ * until it is due, and concurrent callers queue up behind it.
+ * <p/>
+ * Thread-safe.
+ */
+class TokenBucket {
+
+    private static final String TO_STRING_FORMAT = "TokenBucket(rate(%s), burst(%d))";
+
+    private final double rate;
+    private final int burst;
+    /**
+     * The time in nanoseconds it takes to refill one token.
+     */
+    private final long interval;
+    /**
+     * The time in nanoseconds it takes to refill the whole bucket.
+     */
+    private final long capacity;
+    /**
+     * The {@link System#nanoTime()} at which the bucket is (or was) virtually empty,
+     * in the future as far as tokens are taken in advance.
+     */
+    private final AtomicLong empty;
+
+    /**
+     * @param rate  The number of tokens refilled per second, greater than {@code 0}.
+     * @param burst The max. number of tokens in the bucket, greater than {@code 0}. Initially the bucket is full.
+     */
+    TokenBucket(final double rate, final int burst) {
+        this.rate = rate;
+        this.burst = burst;
+        this.interval = Math.max(1, Math.round(1.0e9 / rate));
+        this.capacity = interval * burst;
+        this.empty = new AtomicLong(nanoTime() - capacity);
+    }
+
+    /**
+     * Takes a token and blocks the calling thread until the token is due.
+     * An interrupt doesn't cut the wait short (that would exceed the rate) but is preserved.
+     *
+     * @return {@code true} if the calling thread had to wait.
+     */
+    final boolean acquire() {
+        final long due = reserve(nanoTime());
+        boolean waited = false;
+        boolean interrupted = false;
+        for (long delay = due - nanoTime(); 0 < delay; delay = due - nanoTime()) {
+            waited = true;
+            LockSupport.parkNanos(this, delay);
+            interrupted |= Thread.interrupted();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return waited;
+    }
+
+    /**
+     * Takes a token.
+     *
+     * @return The {@link System#nanoTime()} at which the token is due.
+     */
+    private long reserve(final long now) {
+        while (true) {
+            final long current = empty.get();
+            // A bucket can't hold more than its capacity, so it can't have been empty before ...
+            final long next = Math.max(current, now - capacity) + interval;
+            if (empty.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Retrieves the number of tokens that could be taken now without waiting,
+     * {@code 0} as far as tokens are taken in advance.
+     */
+    final long available(final long now) {
+        return Math.max(0, Math.min(burst, (now - empty.get()) / interval));
+    }
+
+    @Override
+    public final String toString() {
+        return String.format(TO_STRING_FORMAT, rate, burst);
+    }
+}
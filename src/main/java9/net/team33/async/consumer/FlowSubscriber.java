@@ -0,0 +1,184 @@
+package net.team33.async.consumer;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A {@link Flow.Subscriber} that passes the received items to a {@link Scheduler} for asynchronous processing and
+ * requests further items from its publisher only as far as the scheduler can take them.
+ * <p/>
+ * The subscriber keeps the load of the scheduler plus the items requested but not yet received within the
+ * {@linkplain Strategy capacity} of the scheduler's strategy, i.e. the load at which it reaches its max. number of
+ * threads. Items are requested in batches of half that capacity as processing proceeds, so the publisher is signalled
+ * only once per batch rather than once per item, and the queue of the scheduler doesn't grow unbounded.
+ * <p/>
+ * Available as of Java 9 (multi-release).
+ *
+ * @param <MSG> The type of items to be consumed.
+ * @author AKK - Andreas Kluge-Kaindl, Bremen (de)
+ * @since team33-async-8.0.1
+ */
+@SuppressWarnings("UnusedDeclaration")
+public class FlowSubscriber<MSG> implements Flow.Subscriber<MSG> {
+
+    private static final String TO_STRING_FORMAT = "%s(%s, capacity(%d))";
+
+    private final Lock lock = new ReentrantLock();
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    private final Scheduler<MSG> scheduler;
+    private final Consumer<? super MSG> target;
+    private final int capacity;
+    private final int batch;
+    /**
+     * The number of items requested and not yet finally processed, i.e. the load of the scheduler plus the items
+     * requested but not yet received. Tracked separately from {@link Scheduler#getLoad()} so that neither receiving
+     * nor processing an item contends for the lock of the scheduler. So the load of the scheduler may exceed the
+     * capacity by the items just processed by the target but not yet finished from the scheduler's point of view
+     * (at most one per worker thread).
+     */
+    private final AtomicLong pending = new AtomicLong(0);
+    /**
+     * Guarded by the lock: calls to the subscription must be serialized.
+     */
+    private Flow.Subscription subscription = null;
+    private boolean cancelled = false;
+
+    private FlowSubscriber(final Strategy strategy, final Consumer<? super MSG> target) {
+        this.target = target;
+        this.capacity = strategy.capacity();
+        this.batch = Math.max(1, capacity / 2);
+        this.scheduler = Scheduler.builder(strategy, this::process).build();
+    }
+
+    /**
+     * Retrieves a new subscriber that processes the received items by the given target in worker threads
+     * launched according to the given strategy.
+     *
+     * @throws NullPointerException when {@code strategy} or {@code target} is {@code null}.
+     */
+    public static <MSG> FlowSubscriber<MSG> of(final Strategy strategy, final Consumer<? super MSG> target)
+            throws NullPointerException {
+        return new FlowSubscriber<>(requireNonNull(strategy), requireNonNull(target));
+    }
+
+    /**
+     * Retrieves the underlying scheduler, e.g. to {@linkplain Scheduler#join(long) join} it or to retrieve its
+     * {@linkplain Scheduler#getProblems() problems}.
+     */
+    public final Scheduler<MSG> getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Retrieves a future that completes when the publisher has completed and all received items are processed,
+     * or completes exceptionally when the publisher signals an error or the scheduler rejects an item.
+     */
+    public final CompletableFuture<Void> whenComplete() {
+        return completion;
+    }
+
+    @Override
+    public final void onSubscribe(final Flow.Subscription subscription) throws NullPointerException {
+        requireNonNull(subscription);
+        lock.lock();
+        try {
+            if ((null != this.subscription) || cancelled) {
+                // A subscriber may be subscribed only once ...
+                subscription.cancel();
+            } else {
+                this.subscription = subscription;
+                pending.set(capacity);
+                subscription.request(capacity);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * <b>This implementation</b> passes the item to the scheduler. If the scheduler doesn't take it, e.g. because it
+     * is {@linkplain Scheduler#stop() stopped}, the subscription is cancelled and the {@linkplain #whenComplete()
+     * completion} fails with the cause rather than throwing it to the publisher.
+     */
+    @Override
+    public final void onNext(final MSG item) throws NullPointerException {
+        requireNonNull(item);
+        try {
+            scheduler.accept(item);
+        } catch (final IllegalStateException caught) {
+            cancel();
+            completion.completeExceptionally(caught);
+        }
+    }
+
+    @Override
+    public final void onError(final Throwable throwable) throws NullPointerException {
+        completion.completeExceptionally(requireNonNull(throwable));
+    }
+
+    @Override
+    public final void onComplete() {
+        scheduler.whenDrained().thenRun(() -> completion.complete(null));
+    }
+
+    /**
+     * Cancels the subscription, if any: the publisher stops sending items. Items already received are processed.
+     */
+    public final void cancel() {
+        lock.lock();
+        try {
+            cancelled = true;
+            if (null != subscription) {
+                subscription.cancel();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void process(final MSG item) {
+        try {
+            target.accept(item);
+        } finally {
+            pending.decrementAndGet();
+            replenish();
+        }
+    }
+
+    /**
+     * Requests further items as soon as a whole batch can be taken.
+     */
+    private void replenish() {
+        for (long current = pending.get(); (capacity - current) >= batch; current = pending.get()) {
+            if (pending.compareAndSet(current, capacity)) {
+                request(capacity - current);
+                return;
+            }
+        }
+    }
+
+    private void request(final long count) {
+        lock.lock();
+        try {
+            if (!cancelled) {
+                subscription.request(count);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public final String toString() {
+        return format(TO_STRING_FORMAT, getClass().getSimpleName(), scheduler, capacity);
+    }
+}
@@ -0,0 +1,164 @@
+package net.team33.async.consumer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.management.ThreadMXBean;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Verifies that passing and processing messages allocates nothing per message, neither in the producing thread nor
+ * in the worker threads (draining the queue, filling the batch, recording the statistics). Only a batch target gets a
+ * copy of each batch.
+ * <p/>
+ * Runs in a JVM of its own with escape analysis disabled (see pom.xml). Escape analysis may eliminate an allocation
+ * that doesn't escape a compiled method, but only if the JIT happens to inline all of it. That depends on the call
+ * site, the target and the inlining budget, so an application may well allocate where this test wouldn't notice.
+ * Disabled, the test sees what the code itself allocates rather than what the JIT is able to remove here.
+ */
+public class AllocationTest {
+
+    private static final Object MESSAGE = 278;
+    private static final int SIZE = 100000;
+
+    private final List<Thread> workers = new ArrayList<>(0);
+    private ThreadMXBean threads;
+    private long threadId;
+
+    @Before
+    public final void setUp() {
+        final java.lang.management.ThreadMXBean mxBean = ManagementFactory.getThreadMXBean();
+        assumeTrue(mxBean instanceof ThreadMXBean);
+        threads = (ThreadMXBean) mxBean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        threadId = Thread.currentThread().getId();
+    }
+
+    /**
+     * Creates the worker threads and keeps track of them, so their allocations can be measured as well.
+     */
+    private Thread newThread(final Runnable runnable, final String name) {
+        final Thread result = new Thread(runnable, name);
+        synchronized (workers) {
+            workers.add(result);
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves the bytes allocated so far by the producing thread and all worker threads still alive.
+     * The worker threads are kept alive, so none of them terminates while measuring.
+     */
+    private long allocated() {
+        long result = threads.getThreadAllocatedBytes(threadId);
+        synchronized (workers) {
+            for (final Thread worker : workers) {
+                result += Math.max(0, threads.getThreadAllocatedBytes(worker.getId()));
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public final void testScheduler() throws InterruptedException {
+        final Scheduler<Object> subject = Scheduler.builder(Strategy.linear(1, 1), msg -> {
+        }).setKeepAlive(10000).setNewThread(this::newThread).build();
+
+        // warm up to a steady state: the worker thread is launched, the queue is grown, the code is compiled ...
+        for (int round = 0; round < 10; ++round) {
+            for (int index = 0; index < SIZE; ++index) {
+                subject.accept(MESSAGE);
+            }
+            assertTrue(subject.join(10000));
+        }
+
+        final long bytes0 = allocated();
+        for (int index = 0; index < SIZE; ++index) {
+            subject.accept(MESSAGE);
+        }
+        assertTrue(subject.join(10000));
+        final long bytes1 = allocated();
+
+        // Less than one byte per message: nothing is allocated per message ...
+        assertTrue("allocated " + (bytes1 - bytes0) + " bytes", (bytes1 - bytes0) < SIZE);
+    }
+
+    @Test
+    public final void testBatch() throws InterruptedException {
+        final Scheduler<Object> subject = Scheduler.batchBuilder(Strategy.linear(1, 1), (List<Object> batch) -> {
+        }).setBatchSize(100).setKeepAlive(10000).setNewThread(this::newThread).build();
+
+        // warm up to a steady state: the worker thread is launched, the queue is grown, the code is compiled ...
+        for (int round = 0; round < 10; ++round) {
+            for (int index = 0; index < SIZE; ++index) {
+                subject.accept(MESSAGE);
+            }
+            assertTrue(subject.join(10000));
+        }
+
+        final long bytes0 = allocated();
+        for (int index = 0; index < SIZE; ++index) {
+            subject.accept(MESSAGE);
+        }
+        assertTrue(subject.join(10000));
+        final long bytes1 = allocated();
+
+        // The target owns the batch passed to it, so a copy is allocated per batch: at most one reference (8 bytes)
+        // per message plus less than one byte per message for the list itself, but nothing else per message ...
+        assertTrue("allocated " + (bytes1 - bytes0) + " bytes", (bytes1 - bytes0) < (9 * SIZE));
+    }
+
+    @Test
+    public final void testInline() {
+        final Scheduler<Object> subject = Scheduler.builder(Strategy.linear(1, 1), msg -> {
+        }).build();
+
+        // warm up: the recorder is created, the code is compiled ...
+        for (int index = 0; index < (10 * SIZE); ++index) {
+            assertTrue(subject.handOff(MESSAGE));
+        }
+
+        final long bytes0 = allocated();
+        for (int index = 0; index < SIZE; ++index) {
+            subject.handOff(MESSAGE);
+        }
+        final long bytes1 = allocated();
+
+        // Less than one byte per message: processing by the calling thread allocates nothing per message,
+        // neither a recorder nor a list ...
+        assertTrue("allocated " + (bytes1 - bytes0) + " bytes", (bytes1 - bytes0) < SIZE);
+        assertEquals(11 * SIZE, subject.getStatistics().getProcessed());
+    }
+
+    @Test
+    public final void testIntScheduler() throws InterruptedException {
+        final IntScheduler subject = IntScheduler.builder(Strategy.linear(1, 1), message -> {
+        }).setKeepAlive(10000).setNewThread(this::newThread).build();
+
+        // warm up to a steady state: the worker thread is launched, the queue is grown, the code is compiled ...
+        for (int round = 0; round < 10; ++round) {
+            for (int message = 0; message < SIZE; ++message) {
+                subject.accept(message);
+            }
+            assertTrue(subject.join(10000));
+        }
+
+        final long bytes0 = allocated();
+        for (int message = 0; message < SIZE; ++message) {
+            subject.accept(message);
+        }
+        assertTrue(subject.join(10000));
+        final long bytes1 = allocated();
+
+        // Less than one byte per message: no message is boxed ...
+        assertTrue("allocated " + (bytes1 - bytes0) + " bytes", (bytes1 - bytes0) < SIZE);
+    }
+}
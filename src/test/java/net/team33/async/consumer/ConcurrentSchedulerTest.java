@@ -0,0 +1,137 @@
+package net.team33.async.consumer;
+
+import net.team33.async.test.Result;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrentSchedulerTest {
+
+    private static List<Integer> newMessages(final int offset, final int size) {
+        final List<Integer> result = new ArrayList<>(size);
+        for (int index = 0; index < size; ++index) {
+            result.add(offset + index);
+        }
+        return result;
+    }
+
+    private static Tester tester() {
+        return new Tester();
+    }
+
+    @Test
+    public final void testAccept() throws InterruptedException {
+        assertEquals(
+                Result.NO_PROBLEMS,
+                tester().testAccept(Strategy.linear(1), 1, 1, 1001, HashSet::new)
+                        .testAccept(Strategy.linear(1, 1), 1, 1, 1003, ArrayList::new)
+                        .testAccept(Strategy.linear(1004), 1, 1, 1, ArrayList::new)
+                        .testAccept(Strategy.linear(1), 1, 16, 10000, HashSet::new)
+                        .testAccept(Strategy.quadratic(2, 4), 1, 16, 10000, HashSet::new)
+                        .result()
+        );
+    }
+
+    @Test
+    public final void testStripes() throws InterruptedException {
+        assertEquals(
+                Result.NO_PROBLEMS,
+                tester().testAccept(Strategy.linear(1, 1), 4, 1, 1003, ArrayList::new)
+                        .testAccept(Strategy.linear(1), 4, 16, 10000, HashSet::new)
+                        .testAccept(Strategy.linear(100, 2), 3, 16, 10000, HashSet::new)
+                        .result()
+        );
+    }
+
+    @Test
+    public final void testStopASAP() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final Aggregator aggregator = new Aggregator();
+        final ConcurrentScheduler<Object> subject = ConcurrentScheduler.builder(Strategy.linear(1, 1), message -> {
+            try {
+                release.await();
+            } catch (final InterruptedException caught) {
+                throw new IllegalStateException(caught);
+            }
+            aggregator.accept(message);
+        }).setStripes(4).build();
+        final List<Thread> threads = new ArrayList<>(4);
+        for (int index = 0; index < 4; ++index) {
+            final List<Integer> messages = newMessages(index * 100, 100);
+            threads.add(new Thread(() -> messages.forEach(subject)));
+        }
+        threads.forEach(Thread::start);
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        final List<Object> pending = subject.stopASAP();
+        release.countDown();
+        assertTrue(subject.join(10000));
+        assertEquals(400, pending.size() + aggregator.accepted.size());
+        assertEquals(0, subject.getLoad());
+    }
+
+    private static class Aggregator implements Consumer<Object> {
+        private final List<Object> accepted = new ArrayList<>(0);
+
+        @Override
+        public void accept(final Object message) {
+            synchronized (accepted) {
+                accepted.add(message);
+            }
+        }
+    }
+
+    private static class Tester {
+        private final Result result = new Result();
+
+        <N> Tester testAccept(
+                final Strategy strategy, final int stripes, final int producers, final int size,
+                final Function<Collection<?>, N> normal) throws InterruptedException {
+
+            final Aggregator aggregator = new Aggregator();
+            final ConcurrentScheduler<Object> subject = ConcurrentScheduler.builder(strategy, aggregator)
+                                                                           .setStripes(stripes)
+                                                                           .build();
+            final List<Object> input = new ArrayList<>(producers * size);
+            final List<Thread> threads = new ArrayList<>(producers);
+            for (int index = 0; index < producers; ++index) {
+                final List<Integer> messages = newMessages(index * size, size);
+                input.addAll(messages);
+                threads.add(new Thread(() -> messages.forEach(subject)));
+            }
+
+            threads.forEach(Thread::start);
+            for (final Thread thread : threads) {
+                thread.join();
+            }
+            subject.join(Long.MAX_VALUE);
+
+            result.assertEquals(
+                    () -> String.format("[strategy(%s), stripes(%d), producers(%d), size(%d)]", strategy, stripes, producers, size),
+                    normal.apply(input),
+                    normal.apply(aggregator.accepted)
+            ).assertEquals(
+                    () -> String.format("[strategy(%s), stripes(%d), producers(%d), size(%d)] load", strategy, stripes, producers, size),
+                    0,
+                    subject.getLoad()
+            );
+
+            return this;
+        }
+
+        public Result result() {
+            return result;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package net.team33.async.consumer;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class IntSchedulerTest {
+
+    private static final int SIZE = 100000;
+
+    @Test
+    public final void testAccept() throws Throwable {
+        final LongAdder sum = new LongAdder();
+        final LongAdder count = new LongAdder();
+        final IntScheduler subject = IntScheduler.builder(Strategy.linear(100, 4), message -> {
+            sum.add(message);
+            count.increment();
+        }).build();
+
+        for (int message = 0; message < SIZE; ++message) {
+            subject.accept(message);
+        }
+        subject.acceptAll(1, 2, 3);
+        assertTrue(subject.join(10000));
+        subject.throwProblems();
+
+        assertEquals(SIZE + 3, count.sum());
+        assertEquals(((long) SIZE * (SIZE - 1) / 2) + 6, sum.sum());
+        assertEquals(0, subject.getLoad());
+    }
+
+    @Test
+    public final void testStopASAP() throws InterruptedException {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final IntScheduler subject = IntScheduler.builder(Strategy.linear(1, 1), message -> {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (final InterruptedException caught) {
+                throw new IllegalStateException(caught);
+            }
+        }).setBatchSize(1).build();
+
+        subject.accept(0);
+        assertTrue(entered.await(10, TimeUnit.SECONDS));
+        subject.acceptAll(1, 2, 3, 4, 5);
+        assertEquals(6, subject.getLoad());
+
+        assertArrayEquals(new int[]{1, 2, 3, 4, 5}, subject.stopASAP());
+        assertTrue(subject.isStopped());
+        release.countDown();
+        assertTrue(subject.join(10000));
+    }
+}
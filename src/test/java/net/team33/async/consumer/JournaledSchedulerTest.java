@@ -0,0 +1,203 @@
+package net.team33.async.consumer;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JournaledSchedulerTest {
+
+    private static final Codec<Integer> CODEC = new Codec<Integer>() {
+        @Override
+        public byte[] encode(final Integer message) {
+            return ByteBuffer.allocate(4).putInt(message).array();
+        }
+
+        @Override
+        public Integer decode(final byte[] bytes) {
+            return ByteBuffer.wrap(bytes).getInt();
+        }
+    };
+
+    private static List<Integer> newMessages(final int offset, final int size) {
+        final List<Integer> result = new ArrayList<>(size);
+        for (int index = 0; index < size; ++index) {
+            result.add(offset + index);
+        }
+        return result;
+    }
+
+    private static JournaledScheduler<Integer> newScheduler(final File directory, final Consumer<Integer> target)
+            throws Exception {
+        return JournaledScheduler.builder(Strategy.linear(1, 1), target, directory, CODEC)
+                                 .setSegmentSize(1024)
+                                 .build();
+    }
+
+    /**
+     * Waits until the given scheduler has finished all but the given number of messages, including their done records.
+     */
+    private static void awaitLoad(final JournaledScheduler<?> scheduler, final int load) throws InterruptedException {
+        while (load < scheduler.getLoad()) {
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Deletes a temporary journal directory and the files left in it.
+     */
+    private static void delete(final File directory) {
+        final File[] files = directory.listFiles();
+        for (final File file : (null == files) ? new File[0] : files) {
+            assertTrue(file.delete());
+        }
+        assertTrue(directory.delete());
+    }
+
+    @Test
+    public final void testReplay() throws Exception {
+        final File directory = Files.createTempDirectory("journal").toFile();
+        final CountDownLatch never = new CountDownLatch(1);
+        final JournaledScheduler<Integer> crashing = newScheduler(directory, message -> {
+            try {
+                never.await();
+            } catch (final InterruptedException caught) {
+                throw new IllegalStateException(caught);
+            }
+        });
+        try {
+            crashing.acceptAll(newMessages(0, 50));
+            newMessages(50, 50).forEach(crashing);
+
+            // as if the process crashed and restarts ...
+            final List<Integer> processed = new ArrayList<>(0);
+            final JournaledScheduler<Integer> restarted = newScheduler(directory, processed::add);
+            assertTrue(restarted.join(10000));
+            restarted.close();
+            assertEquals(newMessages(0, 100), processed);
+
+            final List<Integer> nothing = new ArrayList<>(0);
+            final JournaledScheduler<Integer> again = newScheduler(directory, nothing::add);
+            assertTrue(again.join(10000));
+            again.close();
+            assertEquals(0, nothing.size());
+        } finally {
+            crashing.close();
+            never.countDown();
+            delete(directory);
+        }
+    }
+
+    @Test
+    public final void testFinishOutOfOrder() throws Exception {
+        final File directory = Files.createTempDirectory("journal").toFile();
+        final CountDownLatch never = new CountDownLatch(1);
+        final JournaledScheduler<Integer> crashing = JournaledScheduler.builder(
+                Strategy.linear(1, 2), (Integer message) -> {
+                    if (0 == message) {
+                        try {
+                            never.await();
+                        } catch (final InterruptedException caught) {
+                            throw new IllegalStateException(caught);
+                        }
+                    }
+                }, directory, CODEC).setSegmentSize(1024).build();
+        try {
+            crashing.accept(0);
+            // the first segment remains unfinished, the done records of its other messages go to later segments ...
+            crashing.acceptAll(newMessages(1, 199));
+            awaitLoad(crashing, 1);
+            // ... which are finished and followed by further segments ...
+            crashing.acceptAll(newMessages(200, 100));
+            awaitLoad(crashing, 1);
+
+            // as if the process crashed and restarts: only the unfinished message is replayed ...
+            final List<Integer> processed = new ArrayList<>(0);
+            final JournaledScheduler<Integer> restarted = newScheduler(directory, processed::add);
+            assertTrue(restarted.join(10000));
+            restarted.close();
+            assertEquals(newMessages(0, 1), processed);
+        } finally {
+            crashing.close();
+            never.countDown();
+            delete(directory);
+        }
+    }
+
+    @Test
+    public final void testCloseInFlight() throws Throwable {
+        final File directory = Files.createTempDirectory("journal").toFile();
+        try {
+            final CountDownLatch entered = new CountDownLatch(1);
+            final CountDownLatch release = new CountDownLatch(1);
+            final JournaledScheduler<Integer> closing = newScheduler(directory, message -> {
+                entered.countDown();
+                try {
+                    release.await();
+                } catch (final InterruptedException caught) {
+                    throw new IllegalStateException(caught);
+                }
+            });
+            closing.accept(278);
+            entered.await();
+
+            closing.close();
+            release.countDown();
+            assertTrue(closing.join(10000));
+            // finishing the message doesn't touch the closed journal ...
+            closing.throwProblems();
+
+            // ... so it is replayed ...
+            final List<Integer> processed = new ArrayList<>(0);
+            final JournaledScheduler<Integer> restarted = newScheduler(directory, processed::add);
+            assertTrue(restarted.join(10000));
+            restarted.close();
+            assertEquals(newMessages(278, 1), processed);
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public final void testGroupCommit() throws Throwable {
+        final File directory = Files.createTempDirectory("journal").toFile();
+        try {
+            final List<Integer> processed = new ArrayList<>(0);
+            final JournaledScheduler<Integer> subject = JournaledScheduler.builder(
+                    Strategy.linear(10, 4), (Integer message) -> {
+                        synchronized (processed) {
+                            processed.add(message);
+                        }
+                    }, directory, CODEC).setSegmentSize(4096).build();
+            final List<Integer> input = new ArrayList<>(0);
+            final List<Thread> threads = new ArrayList<>(8);
+            for (int index = 0; index < 8; ++index) {
+                final List<Integer> messages = newMessages(index * 200, 200);
+                input.addAll(messages);
+                threads.add(new Thread(() -> messages.forEach(subject)));
+            }
+            threads.forEach(Thread::start);
+            for (final Thread thread : threads) {
+                thread.join();
+            }
+            assertTrue(subject.join(10000));
+            subject.throwProblems();
+            subject.close();
+
+            assertEquals(new HashSet<>(input), new HashSet<>(processed));
+            // finished segments are deleted, only the current one remains ...
+            assertEquals(1, directory.list().length);
+        } finally {
+            delete(directory);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package net.team33.async.consumer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class KeyedSchedulerTest {
+
+    private static final int KEYS = 50;
+    private static final int SIZE = 200;
+
+    @Test
+    public final void testOrder() throws Throwable {
+        final Map<Integer, List<Integer>> processed = new HashMap<>(0);
+        final KeyedScheduler<Integer, Integer> subject = KeyedScheduler.builder(
+                Strategy.linear(1, 8), (Integer message) -> message % KEYS, (Integer message) -> {
+                    synchronized (processed) {
+                        processed.computeIfAbsent(message % KEYS, key -> new ArrayList<>(SIZE)).add(message);
+                    }
+                }).setQuantum(3).build();
+
+        for (int index = 0; index < KEYS * SIZE; ++index) {
+            subject.accept(index);
+        }
+        assertTrue(subject.join(10000));
+        subject.throwProblems();
+
+        assertEquals(0, subject.getLoad());
+        assertEquals(0, subject.getKeys());
+        assertEquals(KEYS, processed.size());
+        for (final Map.Entry<Integer, List<Integer>> entry : processed.entrySet()) {
+            final List<Integer> expected = new ArrayList<>(SIZE);
+            for (int index = 0; index < SIZE; ++index) {
+                expected.add(index * KEYS + entry.getKey());
+            }
+            assertEquals(expected, entry.getValue());
+        }
+    }
+
+    @Test
+    public final void testStopASAP() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> processed = new ArrayList<>(0);
+        final KeyedScheduler<Character, String> subject = KeyedScheduler.builder(
+                Strategy.linear(1, 1), (String message) -> message.charAt(0), (String message) -> {
+                    try {
+                        release.await();
+                    } catch (final InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    synchronized (processed) {
+                        processed.add(message);
+                    }
+                }).build();
+
+        subject.accept("a1");
+        subject.accept("b1");
+        subject.accept("a2");
+        subject.accept("b2");
+        assertEquals(2, subject.getKeys());
+
+        final List<String> pending = subject.stopASAP();
+        release.countDown();
+        assertTrue(subject.join(10000));
+
+        assertEquals(4, pending.size() + processed.size());
+        assertEquals(0, subject.getLoad());
+        assertEquals(0, subject.getKeys());
+    }
+}
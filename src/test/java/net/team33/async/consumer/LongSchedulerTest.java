@@ -0,0 +1,56 @@
+package net.team33.async.consumer;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LongSchedulerTest {
+
+    private static final long OFFSET = 1L << 40;
+    private static final int SIZE = 100000;
+
+    @Test
+    public final void testAccept() throws Throwable {
+        final LongAdder sum = new LongAdder();
+        final LongScheduler subject = LongScheduler.builder(Strategy.linear(100, 4), sum::add)
+                                                   .setKeepAlive(10)
+                                                   .build();
+
+        for (int index = 0; index < SIZE; ++index) {
+            subject.accept(OFFSET + index);
+        }
+        assertTrue(subject.join(10000));
+        subject.throwProblems();
+
+        assertEquals((OFFSET * SIZE) + ((long) SIZE * (SIZE - 1) / 2), sum.sum());
+        assertEquals(0, subject.getLoad());
+    }
+
+    @Test
+    public final void testStopASAP() throws InterruptedException {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final LongScheduler subject = LongScheduler.builder(Strategy.linear(1, 1), message -> {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (final InterruptedException caught) {
+                throw new IllegalStateException(caught);
+            }
+        }).setBatchSize(1).build();
+
+        subject.accept(OFFSET);
+        assertTrue(entered.await(10, TimeUnit.SECONDS));
+        subject.acceptAll(OFFSET + 1, OFFSET + 2);
+
+        assertArrayEquals(new long[]{OFFSET + 1, OFFSET + 2}, subject.stopASAP());
+        release.countDown();
+        assertTrue(subject.join(10000));
+    }
+}
@@ -0,0 +1,107 @@
+package net.team33.async.consumer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PipelineTest {
+
+    private static final int SIZE = 1000;
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (final InterruptedException caught) {
+            throw new IllegalStateException(caught);
+        }
+    }
+
+    @Test
+    public final void testStages() throws Throwable {
+        final Set<Integer> processed = new HashSet<>(0);
+        final Pipeline<String> subject = Pipeline.builder(Strategy.linear(10, 4), (String message) -> {
+            return Integer.valueOf(message);
+        }).then(Strategy.linear(10, 2), (Integer value) -> {
+            return value * 2;
+        }).then(Strategy.linear(10, 2), (Integer value) -> {
+            return (0 == value % 3) ? null : value;
+        }).build((Integer value) -> {
+            synchronized (processed) {
+                processed.add(value);
+            }
+        });
+
+        final Set<Integer> expected = new HashSet<>(0);
+        for (int index = 0; index < SIZE; ++index) {
+            subject.accept(String.valueOf(index));
+            if (0 != index % 3) {
+                expected.add(index * 2);
+            }
+        }
+        assertTrue(subject.join(10000));
+        subject.throwProblems();
+
+        assertEquals(3, subject.getStages());
+        assertEquals(0, subject.getLoad());
+        assertEquals(expected, processed);
+    }
+
+    @Test
+    public final void testHandOff() throws Throwable {
+        final List<Thread> threads = new ArrayList<>(0);
+        final Pipeline<String> subject = Pipeline.builder(Strategy.linear(1, 4), (String message) -> {
+            threads.add(Thread.currentThread());
+            return message;
+        }).then(Strategy.linear(1, 4), (String message) -> {
+            threads.add(Thread.currentThread());
+            return message;
+        }).build(message -> threads.add(Thread.currentThread()));
+
+        subject.accept("message");
+        assertTrue(subject.join(10000));
+        subject.throwProblems();
+
+        // The downstream stages have spare capacity, so no further worker thread is involved ...
+        assertEquals(3, threads.size());
+        assertEquals(1, new HashSet<>(threads).size());
+    }
+
+    @Test
+    public final void testBackpressure() throws Throwable {
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Integer> processed = new ArrayList<>(0);
+        final Pipeline<Integer> subject = Pipeline.builder(Strategy.linear(1, 1), (Integer message) -> message)
+                                                  .then(Strategy.linear(1, 1), (Integer message) -> {
+                                                      await(release);
+                                                      return message;
+                                                  })
+                                                  .setCapacity(2)
+                                                  .build(processed::add);
+
+        final Thread producer = new Thread(() -> {
+            for (int index = 0; index < 100; ++index) {
+                subject.accept(index);
+            }
+        });
+        producer.start();
+        producer.join(500);
+
+        // The producer is blocked because all stages are full ...
+        assertTrue(producer.isAlive());
+        assertTrue(subject.getLoad(0) <= 3);
+        assertTrue(subject.getLoad(1) <= 3);
+
+        release.countDown();
+        producer.join();
+        assertTrue(subject.join(10000));
+        subject.throwProblems();
+        assertEquals(100, processed.size());
+    }
+}
@@ -3,14 +3,29 @@ package net.team33.async.consumer;
 import net.team33.async.test.Result;
 import org.junit.Test;
 
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Predicate;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeNoException;
 
 public class SchedulerTest {
 
@@ -22,6 +37,25 @@ public class SchedulerTest {
         return result;
     }
 
+    /**
+     * Retrieves a target that blocks the worker thread processing a message that meets the given condition until
+     * released (after counting down {@code entered}) and then passes the message to the given target.
+     */
+    private static <M> Consumer<M> blocking(final Predicate<? super M> condition, final CountDownLatch entered,
+                                            final CountDownLatch release, final Consumer<? super M> target) {
+        return message -> {
+            if (condition.test(message)) {
+                entered.countDown();
+                try {
+                    release.await();
+                } catch (final InterruptedException caught) {
+                    throw new IllegalStateException(caught);
+                }
+            }
+            target.accept(message);
+        };
+    }
+
     private static Tester tester() {
         return new Tester();
     }
@@ -38,6 +72,518 @@ public class SchedulerTest {
         );
     }
 
+    @Test
+    public final void testAcceptAll() throws InterruptedException {
+        for (final Strategy strategy : Arrays.asList(Strategy.linear(1), Strategy.linear(1, 1), Strategy.cubic(2))) {
+            final Aggregator aggregator = new Aggregator();
+            final Scheduler<Object> subject = Scheduler.builder(strategy, aggregator).build();
+            final List<?> input = newMessages(1000);
+
+            subject.acceptAll(input);
+            subject.acceptAll(input.toArray());
+            assertTrue(subject.join(10000));
+            assertEquals(2 * input.size(), aggregator.accepted.size());
+            assertEquals(new HashSet<>(input), new HashSet<>(aggregator.accepted));
+        }
+    }
+
+    @Test
+    public final void testKeepAlive() throws InterruptedException {
+        final Aggregator aggregator = new Aggregator();
+        final Scheduler<Object> subject = Scheduler.builder(Strategy.linear(1, 1), aggregator)
+                .setKeepAlive(60000)
+                .build();
+        final List<?> input = newMessages(10);
+
+        for (int burst = 0; burst < 10; ++burst) {
+            input.forEach(subject);
+            assertTrue(subject.join(10000));
+            // The one worker is kept alive but idle ...
+            assertEquals(1, subject.getRunning());
+            assertEquals(0, subject.getLoad());
+        }
+        assertEquals(10 * input.size(), aggregator.accepted.size());
+    }
+
+    @Test
+    public final void testVirtualThreads() throws InterruptedException {
+        final Aggregator aggregator = new Aggregator();
+        final Scheduler.Builder<Object> builder = Scheduler.builder(Strategy.linear(1), aggregator);
+        try {
+            builder.setVirtualThreads();
+        } catch (final UnsupportedOperationException caught) {
+            assumeNoException(caught);
+        }
+        final Scheduler<Object> subject = builder.build();
+        final List<?> input = newMessages(10000);
+
+        input.forEach(subject);
+        assertTrue(subject.join(60000));
+        assertEquals(new HashSet<>(input), new HashSet<>(aggregator.accepted));
+    }
+
+    @Test
+    public final void testBatch() throws InterruptedException {
+        final List<List<Object>> batches = new ArrayList<>(0);
+        final Scheduler<Object> subject = Scheduler.batchBuilder(Strategy.linear(100), (List<Object> batch) -> {
+            synchronized (batches) {
+                batches.add(batch);
+            }
+            if (batch.contains(278)) {
+                throw new IllegalStateException("278");
+            }
+        }).setBatchSize(10).setLinger(1).build();
+        final List<?> input = newMessages(1000);
+
+        input.forEach(subject);
+        assertTrue(subject.join(10000));
+
+        final List<Object> accepted = new ArrayList<>(0);
+        batches.forEach(batch -> {
+            assertTrue(batch.size() <= 10);
+            accepted.addAll(batch);
+        });
+        assertEquals(new HashSet<>(input), new HashSet<>(accepted));
+
+        final List<Throwable> problems = subject.getProblems();
+        assertEquals(1, problems.size());
+        assertTrue(((BatchException) problems.get(0)).getBatch().contains(278));
+    }
+
+    @Test
+    public final void testLingering() throws InterruptedException {
+        final List<Object> accepted = new ArrayList<>(0);
+        final Scheduler<Object> subject = Scheduler.batchBuilder(Strategy.linear(1, 4), (List<Object> batch) -> {
+            synchronized (accepted) {
+                accepted.addAll(batch);
+            }
+        }).setBatchSize(1000).setLinger(500).build();
+        final List<?> input = newMessages(20);
+
+        subject.accept(input.get(0));
+        // the first worker thread lingers to fill up its batch ...
+        Thread.sleep(100);
+        input.subList(1, input.size()).forEach(subject);
+        // ... but doesn't keep further worker threads from being started ...
+        assertTrue(subject.getStatistics().toString(), 1 < subject.getStatistics().getLaunched());
+
+        assertTrue(subject.join(10000));
+        assertEquals(new HashSet<>(input), new HashSet<>(accepted));
+    }
+
+    @Test
+    public final void testOverflow() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final Aggregator aggregator = new Aggregator();
+        final Scheduler<Object> rejecting = overflowing(aggregator, Overflow.reject(), release);
+        final Scheduler<Object> blocking = overflowing(aggregator, Overflow.block(10), release);
+        final Scheduler<Object> dropping = overflowing(aggregator, Overflow.dropOldest(), release);
+        final Scheduler<Object> running = overflowing(aggregator, Overflow.callerRuns(), release);
+
+        for (final Scheduler<Object> subject : Arrays.asList(rejecting, blocking)) {
+            try {
+                subject.accept(-1);
+                fail("expected to fail");
+            } catch (final OverflowException caught) {
+                assertEquals(1, subject.getRejected());
+            }
+        }
+        dropping.acceptAll(newMessages(5));
+        assertEquals(5, dropping.getDropped());
+        running.accept(-1);
+        assertEquals(1, running.getCallerRuns());
+        assertTrue(aggregator.accepted.contains(-1));
+
+        release.countDown();
+        for (final Scheduler<Object> subject : Arrays.asList(rejecting, blocking, dropping, running)) {
+            assertTrue(subject.join(10000));
+        }
+        assertEquals(1 + 4 * 11, aggregator.accepted.size());
+    }
+
+    /**
+     * Retrieves a scheduler with a capacity of 10 messages and a full queue
+     * while its only worker thread is blocked processing a first message until released.
+     */
+    private static Scheduler<Object> overflowing(
+            final Aggregator aggregator, final Overflow overflow, final CountDownLatch release)
+            throws InterruptedException {
+
+        final Thread caller = Thread.currentThread();
+        final CountDownLatch entered = new CountDownLatch(1);
+        final Predicate<Object> async = message -> Thread.currentThread() != caller;
+        final Scheduler<Object> result = Scheduler.builder(
+                Strategy.linear(1, 1), blocking(async, entered, release, aggregator))
+                .setCapacity(10, overflow).build();
+
+        result.accept(0);
+        entered.await();
+        for (int index = 1; index <= 10; ++index) {
+            result.accept(index);
+        }
+        return result;
+    }
+
+    @Test
+    public final void testPriorities() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final Aggregator aggregator = new Aggregator();
+        final Scheduler<Object> draining = prioritized(aggregator, release);
+        final Scheduler<Object> stopping = prioritized(new Aggregator(), release);
+
+        assertEquals(Arrays.asList(-1, -2, -3, -4, -5, -6, 0, 1, 2, 3, 4, 5, 6, 7), stopping.stopASAP());
+        release.countDown();
+        assertTrue(draining.join(10000));
+        assertTrue(stopping.join(10000));
+
+        // the blocking message first, then high and low priority weighted 3:1 ...
+        assertEquals(
+                Arrays.asList(100, -1, -2, 0, -3, -4, -5, 1, -6, 2, 3, 4, 5, 6, 7),
+                aggregator.accepted);
+    }
+
+    /**
+     * Retrieves a scheduler with lanes of high (negative messages) and low priority weighted 3:1,
+     * some messages of low priority queued before some of high priority
+     * while its only worker thread is blocked processing a first message until released.
+     */
+    private static Scheduler<Object> prioritized(final Aggregator aggregator, final CountDownLatch release)
+            throws InterruptedException {
+
+        final CountDownLatch entered = new CountDownLatch(1);
+        final Scheduler<Object> result = Scheduler.builder(
+                Strategy.linear(1, 1), blocking(Integer.valueOf(100)::equals, entered, release, aggregator))
+                .setPriorities(message -> ((Integer) message < 0) ? 0 : 1, 3, 1).build();
+
+        result.accept(100);
+        entered.await();
+        for (int index = 0; index < 8; ++index) {
+            result.accept(index);
+        }
+        for (int index = -1; index >= -6; --index) {
+            result.accept(index);
+        }
+        return result;
+    }
+
+    @Test
+    public final void testAdaptive() throws InterruptedException {
+        final Strategy strategy = Strategy.adaptive(1, 2, 4);
+        assertTrue(strategy.test(Payload.payload(10, 1)));
+        assertFalse(strategy.test(Payload.payload(10, 2)));
+        assertFalse(strategy.test(Payload.payload(1, 1)));
+
+        final Adaptive adaptive = new Adaptive(2, 4, 100);
+        // A falling offered load (not binding) holds the limit, climbing restarts when binding again ...
+        final int[] expected = {3, 4, 4, 3, 2, 3, 3, 3, 3, 4};
+        final long[] counts = {100, 200, 300, 100, 200, 100, 400, 200, 100, 50};
+        final boolean[] binding = {true, true, true, true, true, true, false, false, false, true};
+        for (int index = 0; index < expected.length; ++index) {
+            adaptive.adjust(counts[index], 1000, binding[index]);
+            assertEquals(expected[index], adaptive.getLimit());
+        }
+
+        final Aggregator aggregator = new Aggregator();
+        final Scheduler<Object> subject = Scheduler.builder(Strategy.adaptive(10, 1, 4, 1), aggregator).build();
+        final List<?> input = newMessages(10000);
+        input.forEach(subject);
+        assertTrue(subject.join(10000));
+        assertEquals(new HashSet<>(input), new HashSet<>(aggregator.accepted));
+        assertTrue(subject.getStatistics().getPeakRunning() <= 4);
+    }
+
+    @Test
+    public final void testProblems() throws InterruptedException {
+        final AtomicInteger handled = new AtomicInteger(0);
+        final Scheduler<Object> subject = Scheduler.builder(Strategy.linear(1, 1), message -> {
+            throw new IllegalStateException(String.valueOf(message));
+        }).setProblemCapacity(10).setOnProblem(problem -> handled.incrementAndGet()).build();
+
+        newMessages(1000).forEach(subject);
+        assertTrue(subject.join(10000));
+
+        assertEquals(1000, handled.get());
+        assertEquals(990, subject.getDroppedProblems());
+        final List<Throwable> problems = subject.drainProblems();
+        assertEquals(10, problems.size());
+        assertEquals("990", problems.get(0).getMessage());
+        assertEquals("999", problems.get(9).getMessage());
+        assertTrue(subject.getProblems().isEmpty());
+    }
+
+    @Test
+    public final void testWhenDrained() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger idle = new AtomicInteger(0);
+        final Scheduler<Object> subject = Scheduler.builder(
+                Strategy.linear(1, 1), blocking(message -> true, new CountDownLatch(1), release, message -> {
+                })).build();
+        subject.addIdleListener(idle::incrementAndGet);
+        subject.addIdleListener(() -> {
+            throw new IllegalStateException("listener");
+        });
+
+        assertTrue(subject.whenDrained().isDone());
+        newMessages(10).forEach(subject);
+        final CompletableFuture<Void> drained = subject.whenDrained();
+        assertFalse(drained.isDone());
+
+        release.countDown();
+        drained.get(10, TimeUnit.SECONDS);
+        assertTrue(subject.join(0));
+        assertEquals(1, idle.get());
+        assertEquals("listener", subject.getProblems().get(0).getMessage());
+    }
+
+    @Test
+    public final void testSpill() throws Exception {
+        final File directory = Files.createTempDirectory("spill").toFile();
+        final CountDownLatch release = new CountDownLatch(1);
+        final Aggregator aggregator = new Aggregator();
+        final Scheduler<Object> draining = spilling(directory, aggregator, release);
+        final Scheduler<Object> stopping = spilling(directory, new Aggregator(), release);
+
+        assertEquals(newMessages(1000).subList(1, 1000), stopping.stopASAP());
+        release.countDown();
+        assertTrue(draining.join(10000));
+        assertTrue(stopping.join(10000));
+
+        assertEquals(newMessages(1000), aggregator.accepted);
+        assertEquals(0, directory.list().length);
+        assertTrue(directory.delete());
+    }
+
+    @Test
+    public final void testSpillProblem() throws Exception {
+        final File directory = Files.createTempDirectory("spill").toFile();
+        final Aggregator aggregator = new Aggregator();
+        final AtomicReference<Scheduler<Object>> subject = new AtomicReference<>();
+        final AtomicInteger unlocked = new AtomicInteger(0);
+        subject.set(Scheduler.builder(Strategy.linear(1, 1), aggregator).setSpill(10, directory, new Codec<Object>() {
+            @Override
+            public byte[] encode(final Object message) {
+                return ByteBuffer.allocate(4).putInt((Integer) message).array();
+            }
+
+            @Override
+            public Object decode(final byte[] bytes) {
+                final int message = ByteBuffer.wrap(bytes).getInt();
+                if (278 == message) {
+                    throw new IllegalStateException("278");
+                }
+                return message;
+            }
+        }).setOnProblem(problem -> {
+            // The handler doesn't run under the lock of the scheduler, so another thread can acquire it ...
+            final Thread probe = new Thread(() -> subject.get().getLoad());
+            probe.start();
+            try {
+                probe.join(1000);
+            } catch (final InterruptedException caught) {
+                throw new IllegalStateException(caught);
+            }
+            if (!probe.isAlive()) {
+                unlocked.incrementAndGet();
+            }
+        }).build());
+
+        // all but the first messages are queued at once, so they are spilled ...
+        subject.get().acceptAll(newMessages(1000));
+        assertTrue(subject.get().join(10000));
+
+        assertEquals(1, unlocked.get());
+        assertEquals("278", subject.get().getProblems().get(0).getMessage());
+        assertEquals(999, aggregator.accepted.size());
+        assertTrue(directory.delete());
+    }
+
+    /**
+     * Retrieves a scheduler that holds up to 10 queued messages in the heap and spills the others,
+     * 999 messages queued while its only worker thread is blocked processing a first message until released.
+     */
+    private static Scheduler<Object> spilling(
+            final File directory, final Aggregator aggregator, final CountDownLatch release)
+            throws InterruptedException {
+
+        final CountDownLatch entered = new CountDownLatch(1);
+        final Scheduler<Object> result = Scheduler.builder(
+                Strategy.linear(1, 1), blocking(Integer.valueOf(0)::equals, entered, release, aggregator))
+                .setSpill(10, directory, new Codec<Object>() {
+                    @Override
+                    public byte[] encode(final Object message) {
+                        return ByteBuffer.allocate(4).putInt((Integer) message).array();
+                    }
+
+                    @Override
+                    public Object decode(final byte[] bytes) {
+                        return ByteBuffer.wrap(bytes).getInt();
+                    }
+                }).build();
+
+        result.accept(0);
+        entered.await();
+        newMessages(1000).subList(1, 1000).forEach(result);
+        return result;
+    }
+
+    @Test
+    public final void testStatistics() throws InterruptedException {
+        final Scheduler<Object> subject = Scheduler.builder(Strategy.linear(100, 4), message -> {
+            if (Integer.valueOf(278).equals(message)) {
+                throw new IllegalStateException("278");
+            }
+        }).build();
+        final List<?> input = newMessages(1000);
+
+        input.forEach(subject);
+        assertTrue(subject.join(10000));
+
+        final Statistics statistics = subject.getStatistics();
+        assertEquals(1000, statistics.getAccepted());
+        assertEquals(1000, statistics.getProcessed());
+        assertEquals(1, statistics.getProblems());
+        assertTrue(statistics.getLaunched() >= statistics.getPeakRunning());
+        assertTrue(statistics.getPeakRunning() >= 1);
+        assertTrue(statistics.getPeakRunning() <= 4);
+        assertEquals(1000, statistics.getQueueWait().getCount());
+        assertEquals(1000, statistics.getServiceTime().getCount());
+        assertTrue(statistics.getServiceTime().getValueAt(50) <= statistics.getServiceTime().getMax());
+    }
+
+    @Test
+    public final void testHistogram() {
+        for (long value = 0; value < 100000; value = (value * 3 / 2) + 1) {
+            final long bucket = Histogram.value(Histogram.index(value));
+            assertTrue(value <= bucket);
+            assertTrue(bucket <= value + (value / Histogram.SUB_BUCKETS));
+        }
+        assertTrue(Histogram.index(Long.MAX_VALUE) < Histogram.SIZE);
+        assertEquals(Long.MAX_VALUE, Histogram.value(Histogram.index(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public final void testRateLimit() throws InterruptedException {
+        final Aggregator aggregator = new Aggregator();
+        final Scheduler<Object> subject = Scheduler.builder(Strategy.linear(1, 100), aggregator)
+                                                   .setRateLimit(200, 10)
+                                                   .build();
+        final List<?> input = newMessages(110);
+        final long time0 = System.nanoTime();
+        input.forEach(subject);
+        assertTrue(subject.join(10000));
+        final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - time0);
+
+        assertEquals(new HashSet<>(input), new HashSet<>(aggregator.accepted));
+        // a burst of 10, the other 100 messages at 200 per second ...
+        assertTrue("millis(" + millis + ")", 450 <= millis);
+        // no worker threads are started just to wait for tokens ...
+        assertTrue(subject.getStatistics().toString(), subject.getStatistics().getPeakRunning() <= 11);
+    }
+
+    @Test
+    public final void testRateLimitRefill() throws InterruptedException {
+        final Aggregator aggregator = new Aggregator();
+        final Scheduler<Object> subject = Scheduler.builder(Strategy.linear(1, 4), message -> {
+            if (message instanceof Integer) {
+                try {
+                    Thread.sleep(20);
+                } catch (final InterruptedException caught) {
+                    throw new IllegalStateException(caught);
+                }
+            }
+            aggregator.accept(message);
+        }).setRateLimit(200, 8).build();
+
+        // empty the bucket ...
+        Collections.nCopies(8, "token").forEach(subject);
+        assertTrue(subject.join(10000));
+        final long launched = subject.getStatistics().getLaunched();
+
+        final List<?> input = newMessages(40);
+        input.forEach(subject);
+        assertTrue(subject.join(10000));
+
+        assertEquals(48, aggregator.accepted.size());
+        // the bucket is empty when the messages are passed but refills while they are processed,
+        // so further worker threads are started although no further messages are passed ...
+        assertTrue(subject.getStatistics().toString(), 4 <= subject.getStatistics().getLaunched() - launched);
+    }
+
+    @Test
+    public final void testCoalescing() throws InterruptedException {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Integer> processed = new ArrayList<>(0);
+        final Scheduler<Integer> subject = Scheduler.builder(
+                Strategy.linear(1, 1), blocking((Integer message) -> true, entered, release, processed::add))
+                .setCoalescing(message -> message % 10).build();
+
+        subject.accept(-1);
+        assertTrue(entered.await(10, TimeUnit.SECONDS));
+        for (int message = 0; message < 1000; ++message) {
+            subject.accept(message);
+        }
+        assertEquals(990, subject.getCoalesced());
+        assertEquals(11, subject.getLoad());
+        assertEquals(10, subject.getOverhead());
+        assertEquals(1001, subject.getStatistics().getAccepted());
+
+        release.countDown();
+        assertTrue(subject.join(10000));
+        assertEquals(Arrays.asList(-1, 990, 991, 992, 993, 994, 995, 996, 997, 998, 999), processed);
+    }
+
+    @Test
+    public final void testTimeToLive() throws InterruptedException {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Integer> processed = new ArrayList<>(0);
+        final List<Integer> expired = new ArrayList<>(0);
+        final Scheduler<Integer> subject = Scheduler.builder(
+                Strategy.linear(1, 1), blocking((Integer message) -> true, entered, release, processed::add))
+                .setBatchSize(4).setTimeToLive(500).setOnExpiry(expired::add).build();
+
+        subject.accept(-1);
+        assertTrue(entered.await(10, TimeUnit.SECONDS));
+        for (int message = 0; message < 10; ++message) {
+            subject.accept(message);
+        }
+        Thread.sleep(700);
+        for (int message = 10; message < 20; ++message) {
+            subject.accept(message);
+        }
+
+        release.countDown();
+        assertTrue(subject.join(10000));
+        assertEquals(newMessages(10), expired);
+        assertEquals(10, subject.getExpired());
+        assertEquals(Arrays.asList(-1, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19), processed);
+    }
+
+    @Test
+    public final void testRetire() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Integer> processed = new ArrayList<>(0);
+        final Scheduler<Integer> subject = Scheduler.builder(
+                Strategy.linear(10, 8), blocking(message -> true, new CountDownLatch(8), release, (Integer message) -> {
+                    synchronized (processed) {
+                        processed.add(message);
+                    }
+                })).build();
+
+        for (int message = 0; message < 100; ++message) {
+            subject.accept(message);
+        }
+        assertEquals(8, subject.getRunning());
+
+        release.countDown();
+        assertTrue(subject.join(10000));
+        assertEquals(100, processed.size());
+        // Surplus worker threads retired while the rest of the spike was still queued, but not all of them ...
+        assertTrue(0 < subject.getRetired());
+        assertTrue(8 > subject.getRetired());
+    }
+
     private static class Aggregator implements Consumer<Object> {
         private final List<Object> accepted = new ArrayList<>(0);
 
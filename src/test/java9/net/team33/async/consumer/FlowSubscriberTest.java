@@ -0,0 +1,78 @@
+package net.team33.async.consumer;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FlowSubscriberTest {
+
+    private static final int SIZE = 10000;
+
+    @Test
+    public final void testBackpressure() throws Throwable {
+        final Set<Integer> processed = new HashSet<>(0);
+        final AtomicInteger maxLoad = new AtomicInteger(0);
+        final AtomicReference<FlowSubscriber<Integer>> subject = new AtomicReference<>();
+        subject.set(FlowSubscriber.of(Strategy.linear(10, 2), (Integer item) -> {
+            maxLoad.accumulateAndGet(subject.get().getScheduler().getLoad(), Math::max);
+            synchronized (processed) {
+                processed.add(item);
+            }
+        }));
+
+        final Set<Integer> expected = new HashSet<>(0);
+        try (final SubmissionPublisher<Integer> publisher = new SubmissionPublisher<>()) {
+            publisher.subscribe(subject.get());
+            for (int index = 0; index < SIZE; ++index) {
+                publisher.submit(index);
+                expected.add(index);
+            }
+        }
+        subject.get().whenComplete().get(10, TimeUnit.SECONDS);
+        subject.get().getScheduler().throwProblems();
+
+        assertEquals(expected, processed);
+        // The capacity of the strategy (2 threads with 10 items each),
+        // plus 1 item per thread just processed but not yet finished from the scheduler's point of view ...
+        assertTrue("maxLoad(" + maxLoad + ")", maxLoad.get() <= 22);
+    }
+
+    @Test
+    public final void testRejected() throws Throwable {
+        final FlowSubscriber<Integer> subject = FlowSubscriber.of(Strategy.linear(10, 2), (Integer item) -> {
+        });
+        final AtomicInteger cancelled = new AtomicInteger(0);
+        subject.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(final long n) {
+            }
+
+            @Override
+            public void cancel() {
+                cancelled.incrementAndGet();
+            }
+        });
+        subject.getScheduler().stop();
+
+        // doesn't throw to the publisher but cancels the subscription ...
+        subject.onNext(278);
+        assertEquals(1, cancelled.get());
+        try {
+            subject.whenComplete().get(10, TimeUnit.SECONDS);
+            fail("expected to fail");
+        } catch (final ExecutionException caught) {
+            assertTrue(caught.getCause() instanceof IllegalStateException);
+        }
+    }
+}